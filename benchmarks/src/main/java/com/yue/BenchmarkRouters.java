@@ -0,0 +1,116 @@
+package com.yue;
+
+/**
+ * BenchmarkRouters
+ *
+ * Routers and packets for the benchmarks. Routers are never started, so that no config file, event loop or socket is
+ * involved and packets only go to the given channel.
+ */
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+
+final class BenchmarkRouters {
+    static final int ID = 1;
+    static final int FIRST_DEST = 1 << 16; // above router ids
+
+    private BenchmarkRouters() {}
+
+    /**
+     * router 1 with neighbors 2 ~ neighbors + 1, all of them at 127.0.0.1
+     */
+    static Router newRouter(Router.MODE mode, int neighbors, Channel channel) {
+        return newRouter(mode, newConfig(neighbors), channel);
+    }
+
+    static Router newRouter(Router.MODE mode, Config config, Channel channel) {
+        DebugHelper.logLevel = DebugHelper.Level.NONE;
+        Router router = new Router(ID, mode);
+        router.init(config);
+        router.udpChannel = channel;
+        return router;
+    }
+
+    /**
+     * config of router 1 with neighbors 2 ~ neighbors + 1, all of them at 127.0.0.1
+     */
+    static Config newConfig(int neighbors) {
+        Config config = new Config();
+        config.routers = new HashMap<>();
+        for (int id = ID; id <= neighbors + 1; id++) {
+            Config.RouterConfig routerConfig = config.new RouterConfig();
+            routerConfig.id = id;
+            routerConfig.ip = "127.0.0.1";
+            routerConfig.neighbors = new int[] {ID};
+            config.routers.put(id, routerConfig);
+        }
+        config.routers.get(ID).neighbors = new int[neighbors];
+        for (int i = 0; i < neighbors; i++) {
+            config.routers.get(ID).neighbors[i] = i + 2;
+        }
+        return config;
+    }
+
+    /**
+     * a channel releasing every datagram written to it on the writing thread, for routers whose neighbor sessions
+     * write from threads of their own
+     */
+    static Channel discardingChannel() {
+        return new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                ReferenceCountUtil.release(msg);
+                promise.trySuccess();
+            }
+
+            @Override
+            public void flush(ChannelHandlerContext ctx) {}
+        });
+    }
+
+    /**
+     * RESPONSEs from a neighbor advertising destinations firstDest ~ firstDest + metrics.length - 1
+     */
+    static List<Rip.Packet> responses(int from, int firstDest, int[] metrics, int maxPacketSize, boolean compact) {
+        ResponsePacker packer = new ResponsePacker(from, maxPacketSize, compact);
+        for (int i = 0; i < metrics.length; i++) {
+            packer.add(firstDest + i, from, metrics[i]);
+        }
+        return packer.finish();
+    }
+
+    /**
+     * a single RESPONSE, however large
+     */
+    static Rip.Packet response(int from, int firstDest, int[] metrics, boolean compact) {
+        return responses(from, firstDest, metrics, Integer.MAX_VALUE, compact).get(0);
+    }
+
+    /**
+     * metrics of size routes, every route set to 1
+     */
+    static int[] metrics(int size) {
+        int[] metrics = new int[size];
+        Arrays.fill(metrics, 1);
+        return metrics;
+    }
+
+    /**
+     * the same routes with changeRatio of them, spread evenly, moved to metric 2
+     */
+    static int[] changedMetrics(int size, double changeRatio) {
+        int[] metrics = metrics(size);
+        for (int i = 0; i < size; i++) {
+            if (Math.floor((i + 1) * changeRatio) > Math.floor(i * changeRatio))
+                metrics[i] = 2;
+        }
+        return metrics;
+    }
+}
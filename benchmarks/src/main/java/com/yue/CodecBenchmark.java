@@ -0,0 +1,68 @@
+package com.yue;
+
+/**
+ * CodecBenchmark
+ *
+ * Protobuf encoding and decoding of one full RESPONSE packet of maxPacketSize bytes.
+ */
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"1472", "65507"})
+    int maxPacketSize;
+
+    @Param({"false", "true"})
+    boolean compact;
+
+    Rip.Packet packet;
+    byte[] bytes;
+
+    @Setup
+    public void setup() {
+        // more routes than fit, only the first and fullest packet is kept
+        packet = BenchmarkRouters.responses(2, BenchmarkRouters.FIRST_DEST, BenchmarkRouters.metrics(100000),
+            maxPacketSize, compact).get(0);
+        bytes = packet.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeHeap() {
+        return packet.toByteArray();
+    }
+
+    @Benchmark
+    public int encodeDirect() {
+        ByteBuf buf = Router.encode(PooledByteBufAllocator.DEFAULT, packet);
+        int size = buf.readableBytes();
+        buf.release();
+        return size;
+    }
+
+    @Benchmark
+    public Rip.Packet decode() throws InvalidProtocolBufferException {
+        return Rip.Packet.parseFrom(bytes);
+    }
+}
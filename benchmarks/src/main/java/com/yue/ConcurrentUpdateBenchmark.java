@@ -0,0 +1,77 @@
+package com.yue;
+
+/**
+ * ConcurrentUpdateBenchmark
+ *
+ * Several neighbors updating disjoint destinations of one router at the same time, every RESPONSE changes all of its
+ * routes. Every thread is a neighbor, run it with -t 1, 2, 4... to see how updates scale with the number of threads.
+ * Scaling only shows with at least as many processors as threads. tableStripes 1 puts the whole table under a
+ * single lock, the baseline the stripes are measured against.
+ */
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConcurrentUpdateBenchmark {
+    private static final int MAX_NEIGHBORS = 64;
+
+    @State(Scope.Benchmark)
+    public static class SharedRouter {
+        @Param({"0", "1"})
+        int tableStripes; // config.table_stripes, 0 for 4 per processor
+
+        Router router;
+        AtomicInteger neighbors = new AtomicInteger();
+
+        @Setup
+        public void setup() {
+            Config config = BenchmarkRouters.newConfig(MAX_NEIGHBORS);
+            config.table_stripes = tableStripes;
+            router = BenchmarkRouters.newRouter(Router.MODE.NORMAL, config, new EmbeddedChannel());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Neighbor {
+        @Param({"100", "1000"})
+        int routesPerNeighbor;
+
+        int id;
+        Rip.Packet[] packets;
+        int next;
+
+        @Setup
+        public void setup(SharedRouter shared) {
+            int index = shared.neighbors.getAndIncrement() % MAX_NEIGHBORS;
+            id = index + 2;
+            int firstDest = BenchmarkRouters.FIRST_DEST + index * routesPerNeighbor;
+            packets = new Rip.Packet[] {
+                BenchmarkRouters.response(id, firstDest, BenchmarkRouters.metrics(routesPerNeighbor), true),
+                BenchmarkRouters.response(id, firstDest, BenchmarkRouters.changedMetrics(routesPerNeighbor, 1), true)};
+        }
+    }
+
+    @Benchmark
+    public void updateRouteTable(SharedRouter shared, Neighbor neighbor) {
+        neighbor.next ^= 1;
+        shared.router.updateRouteTable(neighbor.id, neighbor.packets[neighbor.next]);
+    }
+}
@@ -0,0 +1,109 @@
+package com.yue;
+
+/**
+ * PipelineBenchmark
+ *
+ * Datagrams pushed through the router's inbound pipeline on an EmbeddedChannel: the RESPONSEs a neighbor sends for
+ * tableSize routes, and a REQUEST answered with the full table. streamingDecoder compares RipDecoder with
+ * DatagramPacketDecoder(ProtobufDecoder).
+ */
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.ReferenceCountUtil;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+    private static final int NEIGHBOR = 2;
+    private static final InetSocketAddress LOCAL = new InetSocketAddress("127.0.0.1", 520);
+    private static final InetSocketAddress REMOTE = new InetSocketAddress("127.0.0.2", 520);
+
+    @Param({"1000", "10000"})
+    int tableSize;
+
+    @Param({"false", "true"})
+    boolean compact;
+
+    @Param({"false", "true"})
+    boolean streamingDecoder;
+
+    EmbeddedChannel channel;
+    List<ByteBuf> responses = new ArrayList<>();
+    ByteBuf request;
+
+    @Setup
+    public void setup() {
+        channel = new EmbeddedChannel();
+        Router router = BenchmarkRouters.newRouter(Router.MODE.NORMAL, 1, channel);
+        router.config.streaming_decoder = streamingDecoder;
+        router.initPipeline(channel.pipeline());
+        for (Rip.Packet pkg : BenchmarkRouters.responses(NEIGHBOR, BenchmarkRouters.FIRST_DEST,
+            BenchmarkRouters.metrics(tableSize), router.config.max_packet_size, compact)) {
+            responses.add(Router.encode(PooledByteBufAllocator.DEFAULT, pkg));
+        }
+        request = Router.encode(PooledByteBufAllocator.DEFAULT, Rip.Packet.newBuilder()
+            .setCommand(Rip.Packet.Command.REQUEST).setRouterId(NEIGHBOR).setVersion(compact ? 2 : 1).build());
+        receive(responses);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ByteBuf buf : responses) {
+            buf.release();
+        }
+        request.release();
+        channel.finishAndReleaseAll();
+    }
+
+    private void receive(List<ByteBuf> bufs) {
+        for (ByteBuf buf : bufs) {
+            channel.writeInbound(new DatagramPacket(buf.retainedDuplicate(), LOCAL, REMOTE));
+        }
+    }
+
+    /**
+     * @return number of datagrams sent
+     */
+    private int drainOutbound() {
+        int count = 0;
+        for (Object msg; (msg = channel.readOutbound()) != null; count++) {
+            ReferenceCountUtil.release(msg);
+        }
+        return count;
+    }
+
+    @Benchmark
+    public void response() {
+        receive(responses);
+    }
+
+    @Benchmark
+    public int request() {
+        channel.writeInbound(new DatagramPacket(request.retainedDuplicate(), LOCAL, REMOTE));
+        return drainOutbound();
+    }
+}
@@ -0,0 +1,90 @@
+package com.yue;
+
+/**
+ * ResponseBenchmark
+ *
+ * getRoutingTableBytes for a neighbor that is the next hop of half of the routes, so split horizon and poison
+ * reverse have work to do. cached serves the encoded response of the current snapshot, encode rebuilds it.
+ */
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+    private static final int NEIGHBOR = 2;
+    private static final int OTHER_NEIGHBOR = 3;
+
+    @Param({"NORMAL", "SPLIT_HORIZON", "SPLIT_HORIZON_WITH_POISON_REVERSE"})
+    String mode; // Router.MODE, which the generated benchmark classes cannot see
+
+    @Param({"1000", "100000"})
+    int tableSize;
+
+    @Param({"1", "2"})
+    int neighborVersion;
+
+    Router router;
+
+    @Setup
+    public void setup() {
+        router = BenchmarkRouters.newRouter(Router.MODE.valueOf(mode), 2, new EmbeddedChannel());
+        int half = tableSize / 2;
+        router.updateRouteTable(NEIGHBOR,
+            BenchmarkRouters.response(NEIGHBOR, BenchmarkRouters.FIRST_DEST, BenchmarkRouters.metrics(half), true));
+        router.updateRouteTable(OTHER_NEIGHBOR, BenchmarkRouters.response(OTHER_NEIGHBOR,
+            BenchmarkRouters.FIRST_DEST + half, BenchmarkRouters.metrics(tableSize - half), true));
+        router.setNeighborVersion(NEIGHBOR, neighborVersion);
+    }
+
+    @TearDown
+    public void tearDown() {
+        invalidate();
+    }
+
+    private void invalidate() {
+        Router.CachedResponse cached = router.responseCache.remove(NEIGHBOR);
+        if (cached != null)
+            cached.release();
+    }
+
+    private static int release(List<ByteBuf> bufs) {
+        int bytes = 0;
+        for (ByteBuf buf : bufs) {
+            bytes += buf.readableBytes();
+            buf.release();
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public int cached() {
+        return release(router.getRoutingTableBytes(NEIGHBOR));
+    }
+
+    @Benchmark
+    public int encode() {
+        invalidate();
+        return release(router.getRoutingTableBytes(NEIGHBOR));
+    }
+}
@@ -0,0 +1,82 @@
+package com.yue;
+
+/**
+ * TableMemory
+ *
+ * Heap retained by a routing table of 10,000 to 1,000,000 routes, as a HashMap<Integer, RouterEntry> the way Router
+ * stored routes before RoutingTable, as a RoutingTable and as a RoutingTable indexed by next hop. Not a JMH benchmark,
+ * run it on its own:
+ *
+ * java -cp target/benchmarks.jar com.yue.TableMemory
+ *
+ * Heap in use is compared before and after filling a table, collecting garbage first, so run it with a fixed heap
+ * (-Xms2g -Xmx2g) and no other load.
+ */
+import java.util.HashMap;
+import java.util.Map;
+
+public class TableMemory {
+    static final int[] SIZES = {10000, 100000, 1000000};
+
+    /**
+     * Router's former route entry, an inner class holding a reference to its router
+     */
+    static class RouterEntry {
+        final Object router;
+        int dest;
+        int nextHop;
+        int metric;
+
+        RouterEntry(Object router, int d, int n, int m) {
+            this.router = router;
+            dest = d;
+            nextHop = n;
+            metric = m;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println("routes     HashMap<Integer, RouterEntry>  RoutingTable  RoutingTable(indexed)");
+        for (int routes : SIZES) {
+            System.out.printf("%-10d %27.1f MB %9.1f MB %18.1f MB%n", routes, hashMap(routes) / 1e6,
+                routingTable(routes, false) / 1e6, routingTable(routes, true) / 1e6);
+        }
+    }
+
+    private static long hashMap(int routes) {
+        Object router = new Object();
+        long before = used();
+        Map<Integer, RouterEntry> table = new HashMap<>();
+        for (int dest = 1; dest <= routes; dest++)
+            table.put(dest, new RouterEntry(router, dest, nextHop(dest), 3));
+        long retained = used() - before;
+        if (table.size() != routes)
+            throw new AssertionError();
+        return retained;
+    }
+
+    private static long routingTable(int routes, boolean indexed) {
+        long before = used();
+        RoutingTable table = new RoutingTable(indexed);
+        for (int dest = 1; dest <= routes; dest++)
+            table.put(dest, nextHop(dest), 3);
+        long retained = used() - before;
+        if (table.size() != routes)
+            throw new AssertionError();
+        return retained;
+    }
+
+    /**
+     * routes spread over 8 neighbors
+     */
+    private static int nextHop(int dest) {
+        return 2 + dest % 8;
+    }
+
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
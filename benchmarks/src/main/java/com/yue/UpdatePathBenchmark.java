@@ -0,0 +1,113 @@
+package com.yue;
+
+/**
+ * UpdatePathBenchmark
+ *
+ * RESPONSEs from several neighbors until they are applied, by the receiving thread under the stripe locks (locked),
+ * handed to the routing engine's thread (engine) or to the neighbor's session thread (sessions). Every thread is a
+ * neighbor, sending a RESPONSE that changes all of its routes and waiting until the router has applied it, so queued
+ * paths pay for the handoff. Set the thread count with -t.
+ */
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdatePathBenchmark {
+    private static final int NEIGHBORS = 8;
+    private static final int ROUTES_PER_NEIGHBOR = 100;
+
+    @State(Scope.Benchmark)
+    public static class SharedRouter {
+        @Param({"locked", "engine", "sessions"})
+        String path;
+
+        Router router;
+        AtomicInteger neighbors = new AtomicInteger();
+        AtomicLong offered = new AtomicLong(); // updates handed to the router
+
+        @Setup
+        public void setup() {
+            Config config = BenchmarkRouters.newConfig(NEIGHBORS);
+            if ("engine".equals(path)) {
+                config.update_queue_size = 4096;
+            } else if ("sessions".equals(path)) {
+                config.neighbor_sessions = "platform";
+                config.regular_timer = 3600; // no REQUEST or liveness check after the first while measuring
+            }
+            router = BenchmarkRouters.newRouter(Router.MODE.NORMAL, config, BenchmarkRouters.discardingChannel());
+            if (router.engine != null)
+                router.engine.start();
+            if (router.sessions != null) {
+                ThreadFactory threads = NeighborSession.threadFactory(config.neighbor_sessions);
+                for (NeighborSession session : router.sessions.values())
+                    session.start(threads);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            if (router.engine != null)
+                router.engine.stop();
+            if (router.sessions != null) {
+                for (NeighborSession session : router.sessions.values())
+                    session.stop();
+            }
+        }
+
+        /**
+         * wait until at least ticket updates have been applied
+         */
+        void awaitApplied(long ticket) {
+            for (int spins = 1; router.metrics.getUpdates() < ticket; spins++) {
+                if ((spins & 1023) == 0 && router.metrics.getUpdatesDropped() > 0)
+                    throw new IllegalStateException("updates dropped");
+                Thread.yield();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Neighbor {
+        int id;
+        Rip.Packet[] packets;
+        int next;
+
+        @Setup
+        public void setup(SharedRouter shared) {
+            int index = shared.neighbors.getAndIncrement() % NEIGHBORS;
+            id = index + 2;
+            int firstDest = BenchmarkRouters.FIRST_DEST + index * ROUTES_PER_NEIGHBOR;
+            packets = new Rip.Packet[] {
+                BenchmarkRouters.response(id, firstDest, BenchmarkRouters.metrics(ROUTES_PER_NEIGHBOR), true),
+                BenchmarkRouters.response(id, firstDest, BenchmarkRouters.changedMetrics(ROUTES_PER_NEIGHBOR, 1),
+                    true)};
+        }
+    }
+
+    @Benchmark
+    public void updateRouteTable(SharedRouter shared, Neighbor neighbor) {
+        neighbor.next ^= 1;
+        long ticket = shared.offered.incrementAndGet();
+        shared.router.updateRouteTable(neighbor.id, neighbor.packets[neighbor.next]);
+        shared.awaitApplied(ticket);
+    }
+}
@@ -0,0 +1,63 @@
+package com.yue;
+
+/**
+ * UpdateRouteTableBenchmark
+ *
+ * One RESPONSE carrying the whole table from a neighbor, alternating between two versions of it that differ in
+ * changeRatio of the routes. A ratio of 0 measures refreshes only, changes add a triggered update.
+ */
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateRouteTableBenchmark {
+    private static final int NEIGHBOR = 2;
+
+    @Param({"1000", "10000", "100000"})
+    int tableSize;
+
+    @Param({"0", "0.01", "1"})
+    double changeRatio;
+
+    @Param({"false", "true"})
+    boolean compact;
+
+    Router router;
+    Rip.Packet[] packets;
+    int next;
+
+    @Setup
+    public void setup() {
+        router = BenchmarkRouters.newRouter(Router.MODE.NORMAL, 1, new EmbeddedChannel());
+        packets = new Rip.Packet[] {
+            BenchmarkRouters.response(NEIGHBOR, BenchmarkRouters.FIRST_DEST, BenchmarkRouters.metrics(tableSize),
+                compact),
+            BenchmarkRouters.response(NEIGHBOR, BenchmarkRouters.FIRST_DEST,
+                BenchmarkRouters.changedMetrics(tableSize, changeRatio), compact)};
+        router.updateRouteTable(NEIGHBOR, packets[0]);
+    }
+
+    @Benchmark
+    public void updateRouteTable() {
+        next ^= 1;
+        router.updateRouteTable(NEIGHBOR, packets[next]);
+    }
+}
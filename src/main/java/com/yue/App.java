@@ -2,7 +2,9 @@ package com.yue;
 
 import java.io.FileNotFoundException;
 
-import org.apache.log4j.PropertyConfigurator;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.xml.DOMConfigurator;
+import org.slf4j.MDC;
 
 /**
  * Hello world!
@@ -12,12 +14,14 @@ public class App {
 
     public static void main(String[] args) throws FileNotFoundException, InterruptedException {
         // initialize log4j
-        PropertyConfigurator.configure("log4j.properties");
+        DOMConfigurator.configure("log4j.xml");
         // parse router id from arguments
         int id = args.length == 0 ? 1 : Integer.parseInt(args[0]);
+        MDC.put("router", String.valueOf(id)); // inherited by the event loop threads
         Router.MODE mode = args.length < 2 ? Router.MODE.NORMAL : Router.MODE.values()[Integer.parseInt(args[1])];
         Router router = new Router(id, mode);
         router.init();
         router.run();
+        LogManager.shutdown(); // flush the async appender
     }
 }
@@ -17,13 +17,38 @@ public class Config {
     }
 
     public enum ACTION_TYPE {
-        DISCONNECT, JOIN,
+        DISCONNECT, JOIN, CRASH, // CRASH stops without telling neighbors
     }
 
     int regular_timer = 30;
-    int time_out_timer = 180;
-    int gc_timer = 120;
+    int time_out_timer = 180; // seconds without refresh before a route becomes infinite
+    int gc_timer = 120; // seconds an infinite route is kept before deletion
+    int triggered_timer = 5; // max random delay of triggered updates
+    int hello_interval = 0; // milliseconds between keepalives to neighbors, 0 to rely on regular updates
+    int dead_count = 3; // missed keepalives, or regular updates without them, before a neighbor is down
+    int request_rate = 0; // REQUESTs per second answered per neighbor, 0 for no limit
+    int request_burst = 5; // REQUESTs a neighbor may send at once before request_rate applies
+    int request_coalesce = 0; // milliseconds a REQUEST is not answered again while the routing table is unchanged
+    int flush_batch_size = 64; // max datagrams written before a flush
     int shutdown_timer = 600;
     int protocol_port = 520;
+    String transport = "nio"; // nio or epoll
+    int receive_sockets = 1; // sockets bound to protocol_port, epoll only
+    int recvmmsg_batch = 1; // datagrams read per syscall, epoll only, each of up to max_packet_size bytes
+    int max_datagram_size = 65507; // receive buffer without recvmmsg_batch
+    int max_packet_size = 1472; // responses are split to fit, 1500 bytes ethernet MTU minus IP and UDP headers
+    boolean streaming_decoder = true; // apply RESPONSEs straight from the datagram buffer
+    int table_stripes = 0; // routing table stripes, 0 for 4 per processor
+    int update_queue_size = 0; // RESPONSEs queued for a single routing thread, 0 to apply them on the event loops
+    String neighbor_sessions = "off"; // virtual or platform: a thread per neighbor, virtual threads need JDK 21
+    int triggered_retransmits = 0; // extra copies of each triggered update sent by neighbor sessions
+    int table_dump_timer = 60; // seconds between full routing table dumps, 0 for changes only
+    int table_dump_interval = 1000; // min milliseconds between two routing table dumps
+    int metrics_port = 0; // serves Prometheus metrics at http://127.0.0.1:metrics_port/metrics, 0 for none
+    String snapshot_file = ""; // routing table saved for a warm restart, empty for none
+    int snapshot_timer = 30; // seconds between saves of snapshot_file
+    boolean warm_start = true; // load snapshot_file on start
+    int stale_timer = 90; // seconds a loaded route is kept unless its next hop advertises it again
+    boolean config_reload = false; // apply changes of config.txt without restarting
     Map<Integer, RouterConfig> routers;
 }
@@ -0,0 +1,89 @@
+package com.yue;
+
+/**
+ * ConfigWatcher
+ *
+ * Watches the config file on a daemon thread and hands every version that parses to a listener. Editors save in
+ * several steps, so events are collected until the directory has been quiet for SETTLE_MILLIS before the file is
+ * read. A file that does not parse is skipped, the next save is tried again.
+ */
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+public class ConfigWatcher implements Runnable {
+    static final int SETTLE_MILLIS = 200;
+
+    private final Path file;
+    private final Consumer<Config> listener;
+    private WatchService watchService;
+    private Thread thread;
+
+    ConfigWatcher(Path file, Consumer<Config> listener) {
+        this.file = file.toAbsolutePath();
+        this.listener = listener;
+    }
+
+    void start() throws IOException {
+        watchService = file.getFileSystem().newWatchService();
+        // watch the directory, editors often replace the file instead of writing to it
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this, "config-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (file.getFileName().equals(event.context()))
+                            changed = true;
+                    }
+                    key.reset();
+                } while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+                if (changed)
+                    load();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private void load() {
+        Config config;
+        try (Reader reader = Files.newBufferedReader(file)) {
+            config = new Gson().fromJson(new JsonReader(reader), Config.class);
+        } catch (IOException | JsonParseException e) {
+            DebugHelper.Log(DebugHelper.Level.INFO, "Config not reloaded: {}", e);
+            return;
+        }
+        if (config != null)
+            listener.accept(config);
+    }
+}
@@ -7,4 +7,5 @@ package com.yue;
  */
 public class Constants {
   static int INFINITE = 16;
+  static int VERSION = 2; // version 2 understands compact entries
 }
@@ -1,11 +1,18 @@
 package com.yue;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Router
  *
+ * Logging through SLF4J, the backend (log4j.xml) decides what is written and writes it asynchronously. Callers on
+ * the packet path check isEnabled before building a message, or pass arguments to be formatted only when enabled.
+ *
  * @author: Wenduo Yue
  * @date: 6/16/20
  */
@@ -14,10 +21,62 @@ public class DebugHelper {
         NONE, INFO, DEBUG
     }
 
-    public static Level logLevel = Level.INFO;
+    private static final Logger LOG = LoggerFactory.getLogger("com.yue");
+    // renders routing table dumps away from the event loops
+    private static final ScheduledExecutorService DUMPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "table-dump");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public static Level logLevel = Level.DEBUG; // upper bound, the backend's level applies below it
+
+    public static boolean isEnabled(Level level) {
+        if (logLevel.compareTo(level) < 0)
+            return false;
+        switch (level) {
+            case INFO:
+                return LOG.isInfoEnabled();
+            case DEBUG:
+                return LOG.isDebugEnabled();
+            default:
+                return false;
+        }
+    }
 
     public static void Log(Level level, String s) {
-        if (logLevel.compareTo(level) >= 0)
-            System.out.println(new SimpleDateFormat("HH:mm:ss>> ").format(new Date()) + s);
+        if (!isEnabled(level))
+            return;
+        if (level == Level.DEBUG)
+            LOG.debug(s);
+        else
+            LOG.info(s);
+    }
+
+    /**
+     * @param format SLF4J format, {} is replaced by arg
+     */
+    public static void Log(Level level, String format, Object arg) {
+        if (isEnabled(level))
+            log(level, format, arg, null);
+    }
+
+    public static void Log(Level level, String format, Object arg1, Object arg2) {
+        if (isEnabled(level))
+            log(level, format, arg1, arg2);
+    }
+
+    private static void log(Level level, String format, Object arg1, Object arg2) {
+        if (level == Level.DEBUG)
+            LOG.debug(format, arg1, arg2);
+        else
+            LOG.info(format, arg1, arg2);
+    }
+
+    /**
+     * run task on the dump thread after delay
+     */
+    public static void schedule(Runnable task, long delay, TimeUnit unit) {
+        DUMPER.schedule(task, delay, unit);
     }
 }
@@ -0,0 +1,81 @@
+package com.yue;
+
+import java.util.function.IntConsumer;
+
+/**
+ * DestSet
+ *
+ * Open addressing set of destinations, the routes through one next hop in RoutingTable's index. Removal shifts later
+ * entries back like RoutingTable does, so there are no tombstones. Destinations are never 0, it marks free slots.
+ */
+class DestSet {
+    private static final int DEFAULT_CAPACITY = 4;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private int[] dests = new int[DEFAULT_CAPACITY];
+    private int mask = DEFAULT_CAPACITY - 1;
+    private int size;
+
+    private int slot(int dest) {
+        int h = dest * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    void add(int dest) {
+        if (size + 1 > dests.length * LOAD_FACTOR)
+            rehash(dests.length << 1);
+        int i = slot(dest);
+        while (dests[i] != 0) {
+            if (dests[i] == dest)
+                return;
+            i = (i + 1) & mask;
+        }
+        dests[i] = dest;
+        size++;
+    }
+
+    void remove(int dest) {
+        int hole = slot(dest);
+        while (dests[hole] != dest) {
+            if (dests[hole] == 0)
+                return;
+            hole = (hole + 1) & mask;
+        }
+        for (int i = (hole + 1) & mask; dests[i] != 0; i = (i + 1) & mask) {
+            if (((i - slot(dests[i])) & mask) >= ((i - hole) & mask)) {
+                dests[hole] = dests[i];
+                hole = i;
+            }
+        }
+        dests[hole] = 0;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = dests;
+        dests = new int[capacity];
+        mask = capacity - 1;
+        for (int dest : old) {
+            if (dest == 0)
+                continue;
+            int i = slot(dest);
+            while (dests[i] != 0)
+                i = (i + 1) & mask;
+            dests[i] = dest;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * the set must not change while it is visited
+     */
+    void forEach(IntConsumer visitor) {
+        for (int dest : dests) {
+            if (dest != 0)
+                visitor.accept(dest);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.yue;
+
+/**
+ * EventLoopScheduler
+ *
+ * Scheduler on wall clock time, timers run on the event loops of a group.
+ */
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.concurrent.EventExecutorGroup;
+
+public class EventLoopScheduler implements Scheduler {
+    private final EventExecutorGroup group;
+
+    public EventLoopScheduler(EventExecutorGroup group) {
+        this.group = group;
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public Future<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return group.schedule(task, delay, unit);
+    }
+
+    @Override
+    public Future<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        return group.scheduleAtFixedRate(task, initialDelay, period, unit);
+    }
+}
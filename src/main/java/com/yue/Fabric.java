@@ -0,0 +1,94 @@
+package com.yue;
+
+/**
+ * Fabric
+ *
+ * In-memory datagram network for the simulator. Every router gets an EmbeddedChannel whose outgoing datagrams are
+ * taken off the pipeline and delivered to the channel bound to the recipient address, after a fixed latency and
+ * unless lost. Routers, timers and deliveries all run on the simulator's thread, so nothing here is synchronized.
+ */
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+
+public class Fabric {
+    private final Scheduler scheduler;
+    private final long latencyMicros;
+    private final double loss;
+    private final Random random;
+    private final Map<InetSocketAddress, EmbeddedChannel> channels = new HashMap<>();
+    long packets;
+    long bytes;
+    long dropped;
+
+    public Fabric(Scheduler scheduler, long latencyMicros, double loss, long seed) {
+        this.scheduler = scheduler;
+        this.latencyMicros = latencyMicros;
+        this.loss = loss;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * channel receiving datagrams sent to address, its pipeline has to be set up before
+     */
+    public EmbeddedChannel bind(InetSocketAddress address, EmbeddedChannel channel) {
+        channel.pipeline().addFirst(new Port(address));
+        channels.put(address, channel);
+        return channel;
+    }
+
+    private void send(InetSocketAddress from, DatagramPacket packet) {
+        packets++;
+        bytes += packet.content().readableBytes();
+        EmbeddedChannel target = channels.get(packet.recipient());
+        if (target == null || (loss > 0 && random.nextDouble() < loss)) {
+            dropped++;
+            packet.release();
+            return;
+        }
+        DatagramPacket delivered = new DatagramPacket(packet.content(), packet.recipient(), from);
+        Runnable deliver = () -> {
+            if (!target.isActive()) {
+                dropped++;
+                delivered.release();
+                return;
+            }
+            try {
+                target.writeInbound(delivered);
+            } catch (Exception e) { // rethrown by the embedded channel, the receiving router carries on
+                DebugHelper.Log(DebugHelper.Level.INFO, "Failed to deliver to {}: {}", packet.recipient(), e);
+            }
+        };
+        // queued even without latency, so that a chain of responses never recurses
+        scheduler.schedule(deliver, latencyMicros, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * head of a router's pipeline, hands written datagrams to the fabric
+     */
+    private class Port extends ChannelOutboundHandlerAdapter {
+        private final InetSocketAddress address;
+
+        Port(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            if (msg instanceof DatagramPacket) {
+                send(address, (DatagramPacket)msg);
+                promise.setSuccess();
+            } else {
+                ctx.write(msg, promise);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.yue;
+
+/**
+ * NeighborSession
+ *
+ * Everything a router does for one neighbor, written as a blocking loop on a thread of its own instead of timers on
+ * the shared event loops: it sends the neighbor's REQUESTs and keepalives, checks its liveness, answers its
+ * REQUESTs, applies its RESPONSEs and sends it triggered updates, retransmitting each config.triggered_retransmits
+ * times. The event loops still own the sockets, they decode datagrams and hand them over through a bounded inbox;
+ * a message offered to a full inbox is dropped and counted, the neighbor's next REQUEST or RESPONSE repeats it.
+ *
+ * Sessions run on virtual threads where the JDK has them (21 or later), so tens of thousands of neighbors do not
+ * need as many kernel threads, and fall back to platform threads otherwise. Blocking in a session only parks its own
+ * thread. Session threads take the stripe locks like the event loops do.
+ *
+ * Sessions follow the wall clock, they are not driven by a simulated scheduler.
+ */
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class NeighborSession implements Runnable {
+    static final int QUEUE_SIZE = 64; // inbox capacity
+    private static final Object REQUEST = new Object(); // inbox marker of a REQUEST from the neighbor
+
+    private final Router router;
+    private final Router.Neighbor neighbor;
+    private volatile long requestInterval; // nanoseconds between REQUESTs
+    private volatile long livenessInterval; // nanoseconds between liveness checks
+    private final BlockingQueue<Object> inbox = new LinkedBlockingQueue<>(QUEUE_SIZE);
+    private final RouteChanges changes = new RouteChanges(); // session thread only
+    final LongAdder dropped = new LongAdder();
+    private volatile boolean running;
+    private Thread thread;
+    // triggered update waiting to be sent again, session thread only
+    private RoutingSnapshot retransmit;
+    private int retransmitsLeft;
+    private long retransmitAt;
+
+    NeighborSession(Router router, Router.Neighbor neighbor, long requestInterval, long livenessInterval) {
+        this.router = router;
+        this.neighbor = neighbor;
+        this.requestInterval = requestInterval;
+        this.livenessInterval = livenessInterval;
+    }
+
+    /**
+     * @param kind "virtual" or "platform", virtual falls back to platform threads before JDK 21
+     */
+    static ThreadFactory threadFactory(String kind) {
+        if ("virtual".equals(kind)) {
+            try { // Thread.ofVirtual().name("session-", 0).factory(), by reflection to keep building on Java 8
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                Object ofVirtual = Thread.class.getMethod("ofVirtual").invoke(null);
+                ofVirtual = builder.getMethod("name", String.class, long.class).invoke(ofVirtual, "session-", 0L);
+                return (ThreadFactory)builder.getMethod("factory").invoke(ofVirtual);
+            } catch (ReflectiveOperationException e) {
+                DebugHelper.Log(DebugHelper.Level.INFO, "Virtual threads unavailable, fall back to platform threads");
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, "session-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    void start(ThreadFactory factory) {
+        running = true;
+        thread = factory.newThread(this);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    /**
+     * new intervals apply from the next REQUEST and liveness check on
+     */
+    void retune(long requestInterval, long livenessInterval) {
+        this.requestInterval = requestInterval;
+        this.livenessInterval = livenessInterval;
+    }
+
+    int getNeighborId() {
+        return neighbor.id;
+    }
+
+    int depth() {
+        return inbox.size();
+    }
+
+    /**
+     * called by the event loops
+     *
+     * @return false if the inbox is full and the REQUEST was dropped
+     */
+    boolean offerRequest() {
+        return offer(REQUEST);
+    }
+
+    /**
+     * called by the event loops
+     *
+     * @return false if the inbox is full and update was dropped
+     */
+    boolean offerUpdate(RoutingEngine.Update update) {
+        return offer(update);
+    }
+
+    /**
+     * called by the scheduler
+     *
+     * @return false if the inbox is full and the triggered update was dropped
+     */
+    boolean offerTriggered(RoutingSnapshot routes) {
+        return offer(routes);
+    }
+
+    private boolean offer(Object msg) {
+        if (!inbox.offer(msg)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        long now = router.nanoTime();
+        long nextRequest = now;
+        long nextCheck = now + livenessInterval;
+        while (running) {
+            try {
+                if (now - nextRequest >= 0) {
+                    nextRequest += requestInterval;
+                    router.sendRequest(neighbor.id);
+                    router.flush();
+                }
+                if (now - nextCheck >= 0) {
+                    nextCheck += livenessInterval;
+                    router.sendHello(neighbor.id);
+                    router.checkNeighbor(neighbor, livenessInterval, now);
+                }
+                if (retransmit != null && now - retransmitAt >= 0)
+                    sendTriggered(retransmit, now);
+                long deadline = Math.min(nextRequest, nextCheck);
+                if (retransmit != null && retransmitAt - deadline < 0)
+                    deadline = retransmitAt;
+                Object msg = inbox.poll(Math.max(deadline - now, 0), TimeUnit.NANOSECONDS);
+                now = router.nanoTime();
+                if (msg == REQUEST) {
+                    router.sendResponse(neighbor.id);
+                } else if (msg instanceof RoutingEngine.Update) {
+                    try {
+                        router.applyUpdate((RoutingEngine.Update)msg, changes);
+                        router.onRouteTableUpdated(changes);
+                    } finally {
+                        changes.clear();
+                    }
+                } else if (msg instanceof RoutingSnapshot) {
+                    retransmitsLeft = router.config.triggered_retransmits + 1;
+                    sendTriggered((RoutingSnapshot)msg, now);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+                now = router.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * send routes and keep them for the next retransmission, a newer triggered update replaces them
+     */
+    private void sendTriggered(RoutingSnapshot routes, long now) {
+        if (--retransmitsLeft > 0) {
+            retransmit = routes;
+            retransmitAt = now + TimeUnit.MILLISECONDS.toNanos(router.triggeredDelay());
+        } else {
+            retransmit = null;
+        }
+        router.sendRoutes(neighbor.id, routes);
+        router.flush();
+    }
+}
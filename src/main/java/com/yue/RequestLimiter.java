@@ -0,0 +1,69 @@
+package com.yue;
+
+/**
+ * RequestLimiter
+ *
+ * Decides whether a REQUEST is answered, every answer costs a full routing table. A REQUEST arriving within the
+ * coalescing window of the last one answered for the same neighbor, while the routing table is still at the version
+ * then sent, is dropped: the neighbor is getting that very table already. Otherwise a token bucket per neighbor,
+ * refilled at config.request_rate tokens per second up to config.request_burst, has to hold a token.
+ *
+ * Times are the router's scheduler time, so a simulated router limits in virtual time.
+ */
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+class RequestLimiter {
+    /**
+     * token bucket and last answer of one neighbor, guarded by itself
+     */
+    private static class Source {
+        double tokens;
+        long refilledAt;
+        long answeredAt;
+        long answeredVersion = -1; // routing table version when the last REQUEST was answered
+
+        Source(double tokens, long now) {
+            this.tokens = tokens;
+            refilledAt = now;
+        }
+    }
+
+    private final double rate; // tokens per nanosecond, 0 for no limit
+    private final double burst;
+    private final long window; // nanoseconds, 0 to answer duplicates
+    private final ConcurrentHashMap<Integer, Source> sources = new ConcurrentHashMap<>(); // key: neighbor routerId
+
+    /**
+     * @param rate REQUESTs per second answered per neighbor, 0 for no limit
+     * @param burst REQUESTs answered at once before rate applies
+     * @param window milliseconds duplicate REQUESTs are coalesced
+     */
+    RequestLimiter(int rate, int burst, int window) {
+        this.rate = rate / 1e9;
+        this.burst = Math.max(burst, 1);
+        this.window = TimeUnit.MILLISECONDS.toNanos(window);
+    }
+
+    /**
+     * @param version routing table version a response would carry
+     * @return null if the REQUEST is to be answered, otherwise why it is dropped
+     */
+    RouterMetrics.DROP onRequest(int from, long now, long version) {
+        Source source = sources.computeIfAbsent(from, k -> new Source(burst, now));
+        synchronized (source) {
+            if (window > 0 && source.answeredVersion == version && now - source.answeredAt < window)
+                return RouterMetrics.DROP.COALESCED;
+            if (rate > 0) {
+                source.tokens = Math.min(burst, source.tokens + (now - source.refilledAt) * rate);
+                source.refilledAt = now;
+                if (source.tokens < 1)
+                    return RouterMetrics.DROP.RATE_LIMITED;
+                source.tokens--;
+            }
+            source.answeredAt = now;
+            source.answeredVersion = version;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.yue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.CodedOutputStream;
+
+/**
+ * ResponsePacker
+ *
+ * Packs routes into RESPONSE packets of at most maxPacketSize bytes, either as routerEntries messages or, for
+ * neighbors speaking version 2, as the packed dests/metrics arrays with delta encoded dests.
+ */
+class ResponsePacker {
+    private final int maxPacketSize;
+    private final boolean compact;
+    private final Rip.Packet.Builder builder;
+    private final int headerSize;
+    private final List<Rip.Packet> packets = new ArrayList<>();
+    private int size;
+    private int count;
+    // compact format only
+    private int lastDest;
+    private int destsSize;
+    private int metricsSize;
+
+    ResponsePacker(int routerId, int maxPacketSize, boolean compact) {
+        this.maxPacketSize = maxPacketSize;
+        this.compact = compact;
+        builder = Rip.Packet.newBuilder().setCommand(Rip.Packet.Command.RESPONSE).setRouterId(routerId)
+            .setVersion(Constants.VERSION);
+        headerSize = builder.build().getSerializedSize();
+        size = headerSize;
+    }
+
+    void add(int dest, int nextHop, int metric) {
+        if (compact)
+            addCompact(dest, metric);
+        else
+            addEntry(dest, nextHop, metric);
+        count++;
+    }
+
+    private void addEntry(int dest, int nextHop, int metric) {
+        Rip.Packet.RouterEntry entry =
+            Rip.Packet.RouterEntry.newBuilder().setDest(dest).setNextHop(nextHop).setMetric(metric).build();
+        int entrySize = CodedOutputStream.computeMessageSize(Rip.Packet.ROUTERENTRIES_FIELD_NUMBER, entry);
+        if (size + entrySize > maxPacketSize && count > 0)
+            flush();
+        builder.addRouterEntries(entry);
+        size += entrySize;
+    }
+
+    private void addCompact(int dest, int metric) {
+        int delta = dest - lastDest;
+        int newDestsSize = destsSize + CodedOutputStream.computeSInt32SizeNoTag(delta);
+        int newMetricsSize = metricsSize + CodedOutputStream.computeInt32SizeNoTag(metric);
+        int newSize = headerSize + packedSize(newDestsSize) + packedSize(newMetricsSize);
+        if (newSize > maxPacketSize && count > 0) {
+            flush();
+            // every packet is decoded on its own, so deltas restart from 0
+            addCompact(dest, metric);
+            return;
+        }
+        builder.addDests(delta).addMetrics(metric);
+        lastDest = dest;
+        destsSize = newDestsSize;
+        metricsSize = newMetricsSize;
+    }
+
+    /**
+     * size of a packed repeated field holding dataSize bytes of values, tags of fields 5 and 6 take one byte
+     */
+    private static int packedSize(int dataSize) {
+        return dataSize == 0 ? 0 : 1 + CodedOutputStream.computeUInt32SizeNoTag(dataSize) + dataSize;
+    }
+
+    private void flush() {
+        packets.add(builder.build());
+        builder.clearRouterEntries().clearDests().clearMetrics();
+        size = headerSize;
+        count = 0;
+        lastDest = 0;
+        destsSize = metricsSize = 0;
+    }
+
+    /**
+     * @return packed RESPONSE packets, at least one even if no route was added
+     */
+    List<Rip.Packet> finish() {
+        if (count > 0 || packets.isEmpty())
+            flush();
+        return packets;
+    }
+}
@@ -58,6 +58,46 @@ public final class Rip {
      */
     com.yue.Rip.Packet.RouterEntryOrBuilder getRouterEntriesOrBuilder(
         int index);
+
+    /**
+     * <code>int32 version = 4;</code>
+     * @return The version.
+     */
+    int getVersion();
+
+    /**
+     * <code>repeated sint32 dests = 5;</code>
+     * @return A list containing the dests.
+     */
+    java.util.List<java.lang.Integer> getDestsList();
+    /**
+     * <code>repeated sint32 dests = 5;</code>
+     * @return The count of dests.
+     */
+    int getDestsCount();
+    /**
+     * <code>repeated sint32 dests = 5;</code>
+     * @param index The index of the element to return.
+     * @return The dests at the given index.
+     */
+    int getDests(int index);
+
+    /**
+     * <code>repeated int32 metrics = 6;</code>
+     * @return A list containing the metrics.
+     */
+    java.util.List<java.lang.Integer> getMetricsList();
+    /**
+     * <code>repeated int32 metrics = 6;</code>
+     * @return The count of metrics.
+     */
+    int getMetricsCount();
+    /**
+     * <code>repeated int32 metrics = 6;</code>
+     * @param index The index of the element to return.
+     * @return The metrics at the given index.
+     */
+    int getMetrics(int index);
   }
   /**
    * Protobuf type {@code Packet}
@@ -74,6 +114,8 @@ public final class Rip {
     private Packet() {
       command_ = 0;
       routerEntries_ = java.util.Collections.emptyList();
+      dests_ = emptyIntList();
+      metrics_ = emptyIntList();
     }
 
     @java.lang.Override
@@ -127,6 +169,53 @@ public final class Rip {
                   input.readMessage(com.yue.Rip.Packet.RouterEntry.parser(), extensionRegistry));
               break;
             }
+            case 32: {
+
+              version_ = input.readInt32();
+              break;
+            }
+            case 40: {
+              if (!((mutable_bitField0_ & 0x00000002) != 0)) {
+                dests_ = newIntList();
+                mutable_bitField0_ |= 0x00000002;
+              }
+              dests_.addInt(input.readSInt32());
+              break;
+            }
+            case 42: {
+              int length = input.readRawVarint32();
+              int limit = input.pushLimit(length);
+              if (!((mutable_bitField0_ & 0x00000002) != 0) && input.getBytesUntilLimit() > 0) {
+                dests_ = newIntList();
+                mutable_bitField0_ |= 0x00000002;
+              }
+              while (input.getBytesUntilLimit() > 0) {
+                dests_.addInt(input.readSInt32());
+              }
+              input.popLimit(limit);
+              break;
+            }
+            case 48: {
+              if (!((mutable_bitField0_ & 0x00000004) != 0)) {
+                metrics_ = newIntList();
+                mutable_bitField0_ |= 0x00000004;
+              }
+              metrics_.addInt(input.readInt32());
+              break;
+            }
+            case 50: {
+              int length = input.readRawVarint32();
+              int limit = input.pushLimit(length);
+              if (!((mutable_bitField0_ & 0x00000004) != 0) && input.getBytesUntilLimit() > 0) {
+                metrics_ = newIntList();
+                mutable_bitField0_ |= 0x00000004;
+              }
+              while (input.getBytesUntilLimit() > 0) {
+                metrics_.addInt(input.readInt32());
+              }
+              input.popLimit(limit);
+              break;
+            }
             default: {
               if (!parseUnknownField(
                   input, unknownFields, extensionRegistry, tag)) {
@@ -145,6 +234,12 @@ public final class Rip {
         if (((mutable_bitField0_ & 0x00000001) != 0)) {
           routerEntries_ = java.util.Collections.unmodifiableList(routerEntries_);
         }
+        if (((mutable_bitField0_ & 0x00000002) != 0)) {
+          dests_.makeImmutable(); // C
+        }
+        if (((mutable_bitField0_ & 0x00000004) != 0)) {
+          metrics_.makeImmutable(); // C
+        }
         this.unknownFields = unknownFields.build();
         makeExtensionsImmutable();
       }
@@ -977,6 +1072,73 @@ public final class Rip {
       return routerEntries_.get(index);
     }
 
+    public static final int VERSION_FIELD_NUMBER = 4;
+    private int version_;
+    /**
+     * <code>int32 version = 4;</code>
+     * @return The version.
+     */
+    @java.lang.Override
+    public int getVersion() {
+      return version_;
+    }
+
+    public static final int DESTS_FIELD_NUMBER = 5;
+    private com.google.protobuf.Internal.IntList dests_;
+    /**
+     * <code>repeated sint32 dests = 5;</code>
+     * @return A list containing the dests.
+     */
+    @java.lang.Override
+    public java.util.List<java.lang.Integer>
+        getDestsList() {
+      return dests_;
+    }
+    /**
+     * <code>repeated sint32 dests = 5;</code>
+     * @return The count of dests.
+     */
+    public int getDestsCount() {
+      return dests_.size();
+    }
+    /**
+     * <code>repeated sint32 dests = 5;</code>
+     * @param index The index of the element to return.
+     * @return The dests at the given index.
+     */
+    public int getDests(int index) {
+      return dests_.getInt(index);
+    }
+    private int destsMemoizedSerializedSize = -1;
+
+    public static final int METRICS_FIELD_NUMBER = 6;
+    private com.google.protobuf.Internal.IntList metrics_;
+    /**
+     * <code>repeated int32 metrics = 6;</code>
+     * @return A list containing the metrics.
+     */
+    @java.lang.Override
+    public java.util.List<java.lang.Integer>
+        getMetricsList() {
+      return metrics_;
+    }
+    /**
+     * <code>repeated int32 metrics = 6;</code>
+     * @return The count of metrics.
+     */
+    public int getMetricsCount() {
+      return metrics_.size();
+    }
+    /**
+     * <code>repeated int32 metrics = 6;</code>
+     * @param index The index of the element to return.
+     * @return The metrics at the given index.
+     */
+    public int getMetrics(int index) {
+      return metrics_.getInt(index);
+    }
+    private int metricsMemoizedSerializedSize = -1;
+
     private byte memoizedIsInitialized = -1;
     @java.lang.Override
     public final boolean isInitialized() {
@@ -991,6 +1153,7 @@ public final class Rip {
     @java.lang.Override
     public void writeTo(com.google.protobuf.CodedOutputStream output)
                         throws java.io.IOException {
+      getSerializedSize();
       if (command_ != com.yue.Rip.Packet.Command.REQUEST.getNumber()) {
         output.writeEnum(1, command_);
       }
@@ -1000,6 +1163,23 @@ public final class Rip {
       for (int i = 0; i < routerEntries_.size(); i++) {
         output.writeMessage(3, routerEntries_.get(i));
       }
+      if (version_ != 0) {
+        output.writeInt32(4, version_);
+      }
+      if (getDestsList().size() > 0) {
+        output.writeUInt32NoTag(42);
+        output.writeUInt32NoTag(destsMemoizedSerializedSize);
+      }
+      for (int i = 0; i < dests_.size(); i++) {
+        output.writeSInt32NoTag(dests_.getInt(i));
+      }
+      if (getMetricsList().size() > 0) {
+        output.writeUInt32NoTag(50);
+        output.writeUInt32NoTag(metricsMemoizedSerializedSize);
+      }
+      for (int i = 0; i < metrics_.size(); i++) {
+        output.writeInt32NoTag(metrics_.getInt(i));
+      }
       unknownFields.writeTo(output);
     }
 
@@ -1021,6 +1201,38 @@ public final class Rip {
         size += com.google.protobuf.CodedOutputStream
           .computeMessageSize(3, routerEntries_.get(i));
       }
+      if (version_ != 0) {
+        size += com.google.protobuf.CodedOutputStream
+          .computeInt32Size(4, version_);
+      }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < dests_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeSInt32SizeNoTag(dests_.getInt(i));
+        }
+        size += dataSize;
+        if (!getDestsList().isEmpty()) {
+          size += 1;
+          size += com.google.protobuf.CodedOutputStream
+              .computeInt32SizeNoTag(dataSize);
+        }
+        destsMemoizedSerializedSize = dataSize;
+      }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < metrics_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeInt32SizeNoTag(metrics_.getInt(i));
+        }
+        size += dataSize;
+        if (!getMetricsList().isEmpty()) {
+          size += 1;
+          size += com.google.protobuf.CodedOutputStream
+              .computeInt32SizeNoTag(dataSize);
+        }
+        metricsMemoizedSerializedSize = dataSize;
+      }
       size += unknownFields.getSerializedSize();
       memoizedSize = size;
       return size;
@@ -1041,6 +1253,12 @@ public final class Rip {
           != other.getRouterId()) return false;
       if (!getRouterEntriesList()
           .equals(other.getRouterEntriesList())) return false;
+      if (getVersion()
+          != other.getVersion()) return false;
+      if (!getDestsList()
+          .equals(other.getDestsList())) return false;
+      if (!getMetricsList()
+          .equals(other.getMetricsList())) return false;
       if (!unknownFields.equals(other.unknownFields)) return false;
       return true;
     }
@@ -1060,6 +1278,16 @@ public final class Rip {
         hash = (37 * hash) + ROUTERENTRIES_FIELD_NUMBER;
         hash = (53 * hash) + getRouterEntriesList().hashCode();
       }
+      hash = (37 * hash) + VERSION_FIELD_NUMBER;
+      hash = (53 * hash) + getVersion();
+      if (getDestsCount() > 0) {
+        hash = (37 * hash) + DESTS_FIELD_NUMBER;
+        hash = (53 * hash) + getDestsList().hashCode();
+      }
+      if (getMetricsCount() > 0) {
+        hash = (37 * hash) + METRICS_FIELD_NUMBER;
+        hash = (53 * hash) + getMetricsList().hashCode();
+      }
       hash = (29 * hash) + unknownFields.hashCode();
       memoizedHashCode = hash;
       return hash;
@@ -1204,6 +1432,12 @@ public final class Rip {
         } else {
           routerEntriesBuilder_.clear();
         }
+        version_ = 0;
+
+        dests_ = emptyIntList();
+        bitField0_ = (bitField0_ & ~0x00000002);
+        metrics_ = emptyIntList();
+        bitField0_ = (bitField0_ & ~0x00000004);
         return this;
       }
 
@@ -1242,6 +1476,17 @@ public final class Rip {
         } else {
           result.routerEntries_ = routerEntriesBuilder_.build();
         }
+        result.version_ = version_;
+        if (((bitField0_ & 0x00000002) != 0)) {
+          dests_.makeImmutable();
+          bitField0_ = (bitField0_ & ~0x00000002);
+        }
+        result.dests_ = dests_;
+        if (((bitField0_ & 0x00000004) != 0)) {
+          metrics_.makeImmutable();
+          bitField0_ = (bitField0_ & ~0x00000004);
+        }
+        result.metrics_ = metrics_;
         onBuilt();
         return result;
       }
@@ -1322,6 +1567,29 @@ public final class Rip {
             }
           }
         }
+        if (other.getVersion() != 0) {
+          setVersion(other.getVersion());
+        }
+        if (!other.dests_.isEmpty()) {
+          if (dests_.isEmpty()) {
+            dests_ = other.dests_;
+            bitField0_ = (bitField0_ & ~0x00000002);
+          } else {
+            ensureDestsIsMutable();
+            dests_.addAll(other.dests_);
+          }
+          onChanged();
+        }
+        if (!other.metrics_.isEmpty()) {
+          if (metrics_.isEmpty()) {
+            metrics_ = other.metrics_;
+            bitField0_ = (bitField0_ & ~0x00000004);
+          } else {
+            ensureMetricsIsMutable();
+            metrics_.addAll(other.metrics_);
+          }
+          onChanged();
+        }
         this.mergeUnknownFields(other.unknownFields);
         onChanged();
         return this;
@@ -1676,6 +1944,195 @@ public final class Rip {
         }
         return routerEntriesBuilder_;
       }
+
+      private int version_ ;
+      /**
+       * <code>int32 version = 4;</code>
+       * @return The version.
+       */
+      @java.lang.Override
+      public int getVersion() {
+        return version_;
+      }
+      /**
+       * <code>int32 version = 4;</code>
+       * @param value The version to set.
+       * @return This builder for chaining.
+       */
+      public Builder setVersion(int value) {
+        
+        version_ = value;
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>int32 version = 4;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearVersion() {
+        
+        version_ = 0;
+        onChanged();
+        return this;
+      }
+
+      private com.google.protobuf.Internal.IntList dests_ = emptyIntList();
+      private void ensureDestsIsMutable() {
+        if (!((bitField0_ & 0x00000002) != 0)) {
+          dests_ = mutableCopy(dests_);
+          bitField0_ |= 0x00000002;
+         }
+      }
+      /**
+       * <code>repeated sint32 dests = 5;</code>
+       * @return A list containing the dests.
+       */
+      public java.util.List<java.lang.Integer>
+          getDestsList() {
+        return ((bitField0_ & 0x00000002) != 0) ?
+                 java.util.Collections.unmodifiableList(dests_) : dests_;
+      }
+      /**
+       * <code>repeated sint32 dests = 5;</code>
+       * @return The count of dests.
+       */
+      public int getDestsCount() {
+        return dests_.size();
+      }
+      /**
+       * <code>repeated sint32 dests = 5;</code>
+       * @param index The index of the element to return.
+       * @return The dests at the given index.
+       */
+      public int getDests(int index) {
+        return dests_.getInt(index);
+      }
+      /**
+       * <code>repeated sint32 dests = 5;</code>
+       * @param index The index to set the value at.
+       * @param value The dests to set.
+       * @return This builder for chaining.
+       */
+      public Builder setDests(
+          int index, int value) {
+        ensureDestsIsMutable();
+        dests_.setInt(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated sint32 dests = 5;</code>
+       * @param value The dests to add.
+       * @return This builder for chaining.
+       */
+      public Builder addDests(int value) {
+        ensureDestsIsMutable();
+        dests_.addInt(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated sint32 dests = 5;</code>
+       * @param values The dests to add.
+       * @return This builder for chaining.
+       */
+      public Builder addAllDests(
+          java.lang.Iterable<? extends java.lang.Integer> values) {
+        ensureDestsIsMutable();
+        com.google.protobuf.AbstractMessageLite.Builder.addAll(
+            values, dests_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated sint32 dests = 5;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearDests() {
+        dests_ = emptyIntList();
+        bitField0_ = (bitField0_ & ~0x00000002);
+        onChanged();
+        return this;
+      }
+
+      private com.google.protobuf.Internal.IntList metrics_ = emptyIntList();
+      private void ensureMetricsIsMutable() {
+        if (!((bitField0_ & 0x00000004) != 0)) {
+          metrics_ = mutableCopy(metrics_);
+          bitField0_ |= 0x00000004;
+         }
+      }
+      /**
+       * <code>repeated int32 metrics = 6;</code>
+       * @return A list containing the metrics.
+       */
+      public java.util.List<java.lang.Integer>
+          getMetricsList() {
+        return ((bitField0_ & 0x00000004) != 0) ?
+                 java.util.Collections.unmodifiableList(metrics_) : metrics_;
+      }
+      /**
+       * <code>repeated int32 metrics = 6;</code>
+       * @return The count of metrics.
+       */
+      public int getMetricsCount() {
+        return metrics_.size();
+      }
+      /**
+       * <code>repeated int32 metrics = 6;</code>
+       * @param index The index of the element to return.
+       * @return The metrics at the given index.
+       */
+      public int getMetrics(int index) {
+        return metrics_.getInt(index);
+      }
+      /**
+       * <code>repeated int32 metrics = 6;</code>
+       * @param index The index to set the value at.
+       * @param value The metrics to set.
+       * @return This builder for chaining.
+       */
+      public Builder setMetrics(
+          int index, int value) {
+        ensureMetricsIsMutable();
+        metrics_.setInt(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated int32 metrics = 6;</code>
+       * @param value The metrics to add.
+       * @return This builder for chaining.
+       */
+      public Builder addMetrics(int value) {
+        ensureMetricsIsMutable();
+        metrics_.addInt(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated int32 metrics = 6;</code>
+       * @param values The metrics to add.
+       * @return This builder for chaining.
+       */
+      public Builder addAllMetrics(
+          java.lang.Iterable<? extends java.lang.Integer> values) {
+        ensureMetricsIsMutable();
+        com.google.protobuf.AbstractMessageLite.Builder.addAll(
+            values, metrics_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated int32 metrics = 6;</code>
+       * @return This builder for chaining.
+       */
+      public Builder clearMetrics() {
+        metrics_ = emptyIntList();
+        bitField0_ = (bitField0_ & ~0x00000004);
+        onChanged();
+        return this;
+      }
       @java.lang.Override
       public final Builder setUnknownFields(
           final com.google.protobuf.UnknownFieldSet unknownFields) {
@@ -1748,13 +2205,14 @@ public final class Rip {
       descriptor;
   static {
     java.lang.String[] descriptorData = {
-      "\n\017proto/rip.proto\"\334\001\n\006Packet\022 \n\007command\030" +
+      "\n\017proto/rip.proto\"\215\002\n\006Packet\022 \n\007command\030" +
       "\001 \001(\0162\017.Packet.Command\022\020\n\010routerId\030\002 \001(\005" +
       "\022*\n\rrouterEntries\030\003 \003(\0132\023.Packet.RouterE" +
-      "ntry\032<\n\013RouterEntry\022\014\n\004dest\030\001 \001(\005\022\017\n\007nex" +
-      "tHop\030\002 \001(\005\022\016\n\006metric\030\003 \001(\005\"4\n\007Command\022\013\n" +
-      "\007REQUEST\020\000\022\014\n\010RESPONSE\020\001\022\016\n\nDISCONNECT\020\002" +
-      "B\t\n\007com.yueb\006proto3"
+      "ntry\022\017\n\007version\030\004 \001(\005\022\r\n\005dests\030\005 \003(\021\022\017\n\007" +
+      "metrics\030\006 \003(\005\032<\n\013RouterEntry\022\014\n\004dest\030\001 \001" +
+      "(\005\022\017\n\007nextHop\030\002 \001(\005\022\016\n\006metric\030\003 \001(\005\"4\n\007C" +
+      "ommand\022\013\n\007REQUEST\020\000\022\014\n\010RESPONSE\020\001\022\016\n\nDIS" +
+      "CONNECT\020\002B\t\n\007com.yueb\006proto3"
     };
     descriptor = com.google.protobuf.Descriptors.FileDescriptor
       .internalBuildGeneratedFileFrom(descriptorData,
@@ -1765,7 +2223,7 @@ public final class Rip {
     internal_static_Packet_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_Packet_descriptor,
-        new java.lang.String[] { "Command", "RouterId", "RouterEntries", });
+        new java.lang.String[] { "Command", "RouterId", "RouterEntries", "Version", "Dests", "Metrics", });
     internal_static_Packet_RouterEntry_descriptor =
       internal_static_Packet_descriptor.getNestedTypes().get(0);
     internal_static_Packet_RouterEntry_fieldAccessorTable = new
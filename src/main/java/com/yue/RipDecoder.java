@@ -0,0 +1,264 @@
+package com.yue;
+
+/**
+ * RipDecoder
+ *
+ * Decodes inbound datagrams without materializing Rip.Packet for RESPONSEs: routes are read straight from the
+ * datagram buffer and applied to the routing table one by one, so no message, entry or list objects are created.
+ * REQUEST and DISCONNECT packets, and RESPONSEs laid out in a way the fast path does not handle, are passed on to
+ * RipHandler as Rip.Packet. Packets from routers that are not neighbors are dropped as soon as the header is read.
+ *
+ * One instance per channel, its scratch fields are only touched by the channel's event loop.
+ */
+import java.nio.ByteBuffer;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DecoderException;
+
+public class RipDecoder extends SimpleChannelInboundHandler<DatagramPacket> {
+    private static final int WIRETYPE_VARINT = 0;
+    private static final int WIRETYPE_FIXED64 = 1;
+    private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+    private static final int WIRETYPE_FIXED32 = 5;
+
+    private Router router;
+    // header fields of the current packet
+    private int command;
+    private int routerId;
+    private int version;
+    private int destsIndex, destsEnd;
+    private int metricsIndex, metricsEnd;
+    private boolean fastPath;
+    // index following the last varint read, and the end of readable bytes
+    private int next;
+    private int limit;
+    // route being decoded
+    private int dest, metric;
+    private final RouteChanges changes = new RouteChanges();
+    private RoutingEngine.Update update; // routes collected for a session or the routing engine, null when applied here
+
+    RipDecoder(Router router) {
+        this.router = router;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) {
+        ByteBuf buf = msg.content();
+        limit = buf.writerIndex();
+        try {
+            readHeader(buf);
+        } catch (IndexOutOfBoundsException | CorruptedFrameException e) {
+            // dropped here, protobuf overflows its limits on lengths near Integer.MAX_VALUE
+            throw new DecoderException("malformed packet", e);
+        }
+        if (fastPath && !router.acceptsFrom(routerId)) // dropped before parsing, whatever the command
+            return;
+        if (!fastPath || command != Rip.Packet.Command.RESPONSE_VALUE) {
+            ctx.fireChannelRead(parse(buf));
+            return;
+        }
+        if (DebugHelper.isEnabled(DebugHelper.Level.DEBUG))
+            DebugHelper.Log(DebugHelper.Level.DEBUG, "RESPONSE from {}", routerId);
+        router.setNeighborVersion(routerId, version);
+        router.heardFrom(routerId);
+        router.metrics.onReceived(Rip.Packet.Command.RESPONSE, buf.readableBytes());
+        NeighborSession session = router.sessionOf(routerId);
+        if (router.queuesUpdates(session)) {
+            update = new RoutingEngine.Update(routerId, (destsEnd - destsIndex) / 2);
+            try {
+                applyRoutes(buf);
+            } catch (IndexOutOfBoundsException | CorruptedFrameException e) {
+                throw new DecoderException("malformed RESPONSE from " + routerId, e);
+            } finally { // routes read before a malformed one are kept
+                router.offerUpdate(session, update);
+                update = null;
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        changes.clear();
+        try {
+            applyRoutes(buf);
+        } catch (IndexOutOfBoundsException | CorruptedFrameException e) {
+            throw new DecoderException("malformed RESPONSE from " + routerId, e);
+        } finally { // routes applied before a malformed one are kept
+            router.onRouteTableUpdated(changes);
+        }
+        router.metrics.onUpdate(routerId, System.nanoTime() - start);
+    }
+
+    private static Rip.Packet parse(ByteBuf buf) {
+        ByteBuffer nioBuffer = buf.nioBuffer(buf.readerIndex(), buf.readableBytes());
+        try {
+            return Rip.Packet.parseFrom(nioBuffer);
+        } catch (InvalidProtocolBufferException | IndexOutOfBoundsException e) {
+            throw new DecoderException(e);
+        }
+    }
+
+    /**
+     * first pass over the top level fields, locating the compact arrays. Repeated scalars split over several
+     * chunks or sent unpacked are legal protobuf but never produced by ResponsePacker, they disable the fast path
+     */
+    private void readHeader(ByteBuf buf) {
+        command = routerId = version = 0;
+        destsIndex = destsEnd = metricsIndex = metricsEnd = -1;
+        fastPath = true;
+        int index = buf.readerIndex(), end = buf.writerIndex();
+        while (index < end) {
+            int tag = readVarint(buf, index);
+            index = next;
+            int field = tag >>> 3, wireType = tag & 7;
+            if (field == Rip.Packet.COMMAND_FIELD_NUMBER && wireType == WIRETYPE_VARINT) {
+                command = readVarint(buf, index);
+            } else if (field == Rip.Packet.ROUTERID_FIELD_NUMBER && wireType == WIRETYPE_VARINT) {
+                routerId = readVarint(buf, index);
+            } else if (field == Rip.Packet.VERSION_FIELD_NUMBER && wireType == WIRETYPE_VARINT) {
+                version = readVarint(buf, index);
+            } else if (field == Rip.Packet.DESTS_FIELD_NUMBER || field == Rip.Packet.METRICS_FIELD_NUMBER) {
+                if (wireType != WIRETYPE_LENGTH_DELIMITED) {
+                    fastPath = false;
+                    return;
+                }
+                int length = readLength(buf, index, end);
+                int start = next;
+                if (field == Rip.Packet.DESTS_FIELD_NUMBER && destsIndex < 0) {
+                    destsIndex = start;
+                    destsEnd = start + length;
+                } else if (field == Rip.Packet.METRICS_FIELD_NUMBER && metricsIndex < 0) {
+                    metricsIndex = start;
+                    metricsEnd = start + length;
+                } else {
+                    fastPath = false;
+                    return;
+                }
+                next = start + length;
+            } else {
+                skipField(buf, index, end, wireType);
+            }
+            index = next;
+        }
+    }
+
+    /**
+     * second pass, feed routerEntries and compact entries to the routing table collecting changes, or to update
+     */
+    private void applyRoutes(ByteBuf buf) {
+        if (update == null)
+            router.refreshNeighbor(routerId, changes);
+        int index = buf.readerIndex(), end = buf.writerIndex();
+        while (index < end) {
+            int tag = readVarint(buf, index);
+            index = next;
+            if (tag >>> 3 == Rip.Packet.ROUTERENTRIES_FIELD_NUMBER && (tag & 7) == WIRETYPE_LENGTH_DELIMITED) {
+                int length = readLength(buf, index, end);
+                readRouterEntry(buf, next, next + length);
+                route(dest, metric);
+                index = next;
+            } else {
+                skipField(buf, index, end, tag & 7);
+                index = next;
+            }
+        }
+        int dests = destsIndex, metrics = metricsIndex;
+        int lastDest = 0;
+        while (dests >= 0 && metrics >= 0 && dests < destsEnd && metrics < metricsEnd) {
+            int delta = readVarint(buf, dests);
+            dests = next;
+            lastDest += (delta >>> 1) ^ -(delta & 1); // sint32 zigzag
+            metric = readVarint(buf, metrics);
+            metrics = next;
+            route(lastDest, metric);
+        }
+    }
+
+    private void route(int dest, int metric) {
+        if (update != null)
+            update.add(dest, metric);
+        else
+            router.updateRoute(routerId, dest, metric, changes);
+    }
+
+    private void readRouterEntry(ByteBuf buf, int index, int end) {
+        dest = metric = 0;
+        while (index < end) {
+            int tag = readVarint(buf, index);
+            index = next;
+            int field = tag >>> 3, wireType = tag & 7;
+            if (wireType != WIRETYPE_VARINT) {
+                skipField(buf, index, end, wireType);
+            } else if (field == 1) {
+                dest = readVarint(buf, index);
+            } else if (field == 3) {
+                metric = readVarint(buf, index);
+            } else {
+                readVarint(buf, index);
+            }
+            index = next;
+        }
+        if (index > end)
+            throw new CorruptedFrameException("field exceeds router entry");
+        next = end;
+    }
+
+    /**
+     * skip the field at index, which has to end by end
+     */
+    private void skipField(ByteBuf buf, int index, int end, int wireType) {
+        switch (wireType) {
+            case WIRETYPE_VARINT:
+                readVarint(buf, index);
+                break;
+            case WIRETYPE_FIXED64:
+                next = index + 8;
+                break;
+            case WIRETYPE_LENGTH_DELIMITED:
+                int length = readLength(buf, index, end);
+                next += length;
+                break;
+            case WIRETYPE_FIXED32:
+                next = index + 4;
+                break;
+            default:
+                throw new CorruptedFrameException("unsupported wire type " + wireType);
+        }
+        if (next > end)
+            throw new CorruptedFrameException("field exceeds its message");
+    }
+
+    /**
+     * read the length prefix of a length delimited field at index, its bytes have to end by end. A negative length
+     * would move next backwards and loop over the same bytes forever
+     */
+    private int readLength(ByteBuf buf, int index, int end) {
+        int length = readVarint(buf, index);
+        if (length < 0 || length > end - next)
+            throw new CorruptedFrameException("length " + length + " exceeds its message");
+        return length;
+    }
+
+    /**
+     * read a varint at index and keep its low 32 bits, negative int32 values take 10 bytes
+     */
+    private int readVarint(ByteBuf buf, int index) {
+        int result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (index >= limit)
+                throw new CorruptedFrameException("truncated varint");
+            byte b = buf.getByte(index++);
+            if (shift < 32)
+                result |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                next = index;
+                return result;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint");
+    }
+}
@@ -6,9 +6,12 @@ package com.yue;
  * @author: Wenduo Yue
  * @date: 6/23/20
  */
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.DecoderException;
 
+@ChannelHandler.Sharable
 public class RipHandler extends SimpleChannelInboundHandler<Rip.Packet> {
 
     private Router router;
@@ -20,13 +23,33 @@ public class RipHandler extends SimpleChannelInboundHandler<Rip.Packet> {
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, Rip.Packet msg) {
         int from = msg.getRouterId();
-        DebugHelper.Log(DebugHelper.Level.INFO, msg.getCommand() + " from " + from);
+        if (!router.acceptsFrom(from))
+            return;
+        if (DebugHelper.isEnabled(DebugHelper.Level.DEBUG))
+            DebugHelper.Log(DebugHelper.Level.DEBUG, "{} from {}", msg.getCommand(), from);
+        router.setNeighborVersion(from, msg.getVersion());
+        if (msg.getCommand() != Rip.Packet.Command.DISCONNECT) // a disconnecting neighbor is not alive
+            router.heardFrom(from);
+        router.metrics.onReceived(msg.getCommand(), msg.getSerializedSize());
         if (msg.getCommand() == Rip.Packet.Command.REQUEST) { // response with routing table
-            router.sendResponse(from);
+            router.handleRequest(from);
         } else if (msg.getCommand() == Rip.Packet.Command.RESPONSE) { // try update routing table
-            router.updateRouteTable(from, msg.getRouterEntriesList());
+            router.updateRouteTable(from, msg);
         } else if (msg.getCommand() == Rip.Packet.Command.DISCONNECT) { // simulating disconnection
             router.disconnect(from);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * a malformed datagram is dropped, the channel carries on
+     */
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        if (cause instanceof DecoderException) {
+            router.metrics.decodeFailures.increment();
+            DebugHelper.Log(DebugHelper.Level.DEBUG, "Dropped malformed datagram: {}", cause);
+        } else {
+            ctx.fireExceptionCaught(cause);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.yue;
+
+/**
+ * RouteChanges
+ *
+ * Routes added, modified or withdrawn by one RESPONSE, DISCONNECT or expiry pass, printed instead of the whole
+ * routing table. Every change is counted, only the first MAX_LISTED are kept for printing. Not thread safe, every
+ * caller applying routes brings its own instance.
+ */
+class RouteChanges {
+    enum KIND {
+        ADDED, MODIFIED, WITHDRAWN,
+    }
+
+    static final int MAX_LISTED = 32;
+    private static final char[] SIGNS = {'+', '~', '-'};
+
+    private final int[] counts = new int[KIND.values().length];
+    private final byte[] kinds = new byte[MAX_LISTED];
+    private final int[] dests = new int[MAX_LISTED];
+    private final int[] nextHops = new int[MAX_LISTED];
+    private final int[] metrics = new int[MAX_LISTED];
+    private int size;
+
+    void add(KIND kind, int dest, int nextHop, int metric) {
+        counts[kind.ordinal()]++;
+        if (size < MAX_LISTED) {
+            kinds[size] = (byte)kind.ordinal();
+            dests[size] = dest;
+            nextHops[size] = nextHop;
+            metrics[size] = metric;
+        }
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int count(KIND kind) {
+        return counts[kind.ordinal()];
+    }
+
+    void clear() {
+        size = 0;
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = 0;
+    }
+
+    /**
+     * e.g. "1 added, 1 modified, 0 withdrawn: +3 via 2 metric 2, ~4 via 2 metric 3"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(count(KIND.ADDED)).append(" added, ").append(count(KIND.MODIFIED)).append(" modified, ")
+            .append(count(KIND.WITHDRAWN)).append(" withdrawn:");
+        for (int i = 0; i < Math.min(size, MAX_LISTED); i++) {
+            sb.append(i == 0 ? " " : ", ").append(SIGNS[kinds[i]]).append(dests[i]).append(" via ")
+                .append(nextHops[i]).append(" metric ").append(metrics[i]);
+        }
+        if (size > MAX_LISTED)
+            sb.append(" and ").append(size - MAX_LISTED).append(" more");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package com.yue;
+
+/**
+ * RouteWheel
+ *
+ * Hashed timing wheel of destinations, one bucket per tick. A destination is held in at most one bucket: when its
+ * bucket comes around, the timeout callback decides whether it expired or how many ticks are left, so refreshing a
+ * route only has to update its timestamp in the routing table.
+ *
+ * Not thread safe, StripedRoutingTable guards every wheel by the monitor of its stripe.
+ */
+public class RouteWheel {
+    public interface Timeout {
+        /**
+         * @return ticks until dest has to be checked again, or 0 to drop it from the wheel
+         */
+        int expire(int dest);
+    }
+
+    private final int[][] buckets; // allocated on first use, then reused
+    private final int[] sizes;
+    private final int mask;
+    private int cursor;
+
+    /**
+     * @param maxDelay longest delay ever scheduled, in ticks
+     */
+    public RouteWheel(int maxDelay) {
+        int length = 2;
+        while (length <= maxDelay)
+            length <<= 1;
+        buckets = new int[length][];
+        sizes = new int[length];
+        mask = length - 1;
+    }
+
+    /**
+     * check dest again in delay ticks, delays are clamped to 1 ~ maxDelay
+     */
+    public void schedule(int dest, int delay) {
+        int i = (cursor + Math.max(1, Math.min(delay, mask))) & mask;
+        int[] bucket = buckets[i];
+        if (bucket == null) {
+            bucket = buckets[i] = new int[4];
+        } else if (sizes[i] == bucket.length) {
+            int[] grown = new int[bucket.length << 1];
+            System.arraycopy(bucket, 0, grown, 0, bucket.length);
+            bucket = buckets[i] = grown;
+        }
+        bucket[sizes[i]++] = dest;
+    }
+
+    /**
+     * move to the next tick and pass every destination due in it to timeout
+     */
+    public void advance(Timeout timeout) {
+        cursor = (cursor + 1) & mask;
+        int[] bucket = buckets[cursor];
+        int size = sizes[cursor];
+        if (size == 0)
+            return;
+        // rescheduled destinations never land in the current bucket, delays are shorter than the wheel
+        sizes[cursor] = 0;
+        for (int i = 0; i < size; i++) {
+            int delay = timeout.expire(bucket[i]);
+            if (delay > 0)
+                schedule(bucket[i], delay);
+        }
+    }
+}
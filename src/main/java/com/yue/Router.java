@@ -9,69 +9,145 @@ package com.yue;
 
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import com.google.gson.Gson;
 import com.google.gson.stream.JsonReader;
+import com.google.protobuf.CodedOutputStream;
 
 import de.vandermeer.asciitable.AsciiTable;
 import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.DatagramPacketDecoder;
 import io.netty.handler.codec.DatagramPacketEncoder;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.protobuf.ProtobufDecoder;
 import io.netty.handler.codec.protobuf.ProtobufEncoder;
-import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.handler.flush.FlushConsolidationHandler;
 
 public class Router {
     enum MODE {
         NORMAL, SPLIT_HORIZON, SPLIT_HORIZON_WITH_POISON_REVERSE,
     }
 
-    private class RouterEntry {
-        int dest;
-        int nextHop;
-        private int metric;
+    static class CachedResponse {
+        final long version;
+        final boolean compact;
+        final List<ByteBuf> bufs; // released when replaced, senders only get retained duplicates
 
-        public void setMetric(int m) {
-            metric = Math.min(m, Constants.INFINITE);
+        CachedResponse(long v, boolean c, List<ByteBuf> b) {
+            version = v;
+            compact = c;
+            bufs = b;
         }
 
-        public int getMetric() {
-            return metric;
+        void release() {
+            for (ByteBuf buf : bufs) {
+                buf.release();
+            }
         }
+    }
+
+    /**
+     * liveness of a neighbor, lastHeard is set by the event loops, the rest by the liveness timer
+     */
+    static class Neighbor {
+        final int id;
+        volatile long lastHeard; // scheduler time of the last packet received
+        volatile int missed; // keepalive intervals since lastHeard
+        volatile boolean down;
+        volatile long downAt; // scheduler time it went down, it is up again once heard from later
 
-        RouterEntry(int d, int n, int m) {
-            dest = d;
-            nextHop = n;
-            metric = m;
+        Neighbor(int id) {
+            this.id = id;
         }
     }
 
     private int id;
     private MODE mode;
-    Config config;
-    Config.RouterConfig routerConfig;
+    volatile Config config; // replaced as a whole when config.txt is reloaded
+    volatile Config.RouterConfig routerConfig;
+    ConfigWatcher configWatcher; // null unless config.config_reload
     Bootstrap bootstrap;
-    NioEventLoopGroup group;
-    Channel udpChannel;
-    byte[] requestBytes;
+    EventLoopGroup group;
+    Scheduler scheduler; // timers, on group unless simulated
+    Random random = new Random(); // delays of triggered updates
+    Channel udpChannel; // used for sending
+    Channel metricsChannel; // http server of the Prometheus metrics
+    List<Channel> udpChannels = new ArrayList<>(); // all bound sockets, udpChannel included
+    boolean epoll;
+    RipHandler channelHandler;
+    RouterMetrics metrics;
+    RoutingEngine engine; // null unless config.update_queue_size > 0
+    RequestLimiter requestLimiter;
+    ByteBuf requestBuf;
+    ByteBuf helloBuf; // empty RESPONSE, refreshes the direct route only
     ConcurrentHashMap<Integer, InetSocketAddress> addressMap; // key: routerId
-    Map<Integer, RouterEntry> routingTable; // key: routerId
-    ScheduledFuture future;
+    StripedRoutingTable routingTable; // key: routerId
+    Future<?> future;
+    Future<?> expiryFuture;
+    Future<?> dumpFuture;
+    Future<?> livenessFuture;
+    Future<?> saveFuture;
+    AtomicBoolean savePending = new AtomicBoolean();
+    volatile long savedVersion; // version of the last snapshot saved to config.snapshot_file
+    AtomicInteger pendingWrites = new AtomicInteger(); // datagrams written since the last flush
+    AtomicBoolean triggerPending = new AtomicBoolean();
+    AtomicBoolean dumpPending = new AtomicBoolean();
+    volatile long lastDump; // System.nanoTime() of the last routing table dump
+    AtomicLong tableVersion = new AtomicLong(); // bumped on every routing table change
+    AtomicInteger clock = new AtomicInteger(); // seconds since start, advanced by the expiry timer
+    // latest snapshot taken, stale once its version is behind tableVersion. Guards rebuilding it
+    AtomicReference<RoutingSnapshot> snapshot = new AtomicReference<>(RoutingSnapshot.EMPTY);
+    ConcurrentHashMap<Integer, CachedResponse> responseCache; // key: neighbor routerId
+    ConcurrentHashMap<Integer, Integer> neighborVersions = new ConcurrentHashMap<>(); // key: neighbor routerId
+    ConcurrentHashMap<Integer, Neighbor> neighbors; // key: neighbor routerId
+    ConcurrentHashMap<Integer, NeighborSession> sessions; // key: neighbor routerId, null without neighbor sessions
+    ThreadFactory sessionThreads;
+    AtomicInteger round = new AtomicInteger(); // regular updates sent, actions are keyed by it
 
     Router(int id, MODE mode) {
         this.id = id;
@@ -81,44 +157,194 @@ public class Router {
     public void init() throws FileNotFoundException {
         // parse config file
         Gson gson = new Gson();
-        config = gson.fromJson(new JsonReader(new FileReader("config.txt")), Config.class);
-        routerConfig = config.routers.get(id);
-        // initialize udp channel
-        group = new NioEventLoopGroup(10);
+        init(gson.fromJson(new JsonReader(new FileReader("config.txt")), Config.class));
+        // initialize udp channel, epoll falls back to nio where the native transport is not available
+        epoll = "epoll".equals(config.transport) && Epoll.isAvailable();
+        if ("epoll".equals(config.transport) && !epoll) {
+            DebugHelper.Log(DebugHelper.Level.INFO, "epoll unavailable, fall back to nio: {}",
+                Epoll.unavailabilityCause());
+        }
+        group = epoll ? new EpollEventLoopGroup(10) : new NioEventLoopGroup(10);
+        scheduler = new EventLoopScheduler(group);
         bootstrap = new Bootstrap();
-        RipHandler channelHandler = new RipHandler(this);
-        bootstrap.group(group).channel(NioDatagramChannel.class).handler(new ChannelInitializer<NioDatagramChannel>() {
+        bootstrap.group(group).channel(epoll ? EpollDatagramChannel.class : NioDatagramChannel.class);
+        int receiveBufferSize = config.max_datagram_size;
+        if (epoll) {
+            // every socket bound to protocol_port gets its own event loop, the kernel spreads datagrams among them
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            if (config.recvmmsg_batch > 1) {
+                // read up to recvmmsg_batch datagrams per syscall into slots of max_packet_size, an MTU sized
+                // datagram, instead of max_datagram_size, which would cost ~1 MB per read for a batch of 16
+                bootstrap.option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, config.max_packet_size);
+                receiveBufferSize = config.max_packet_size * config.recvmmsg_batch;
+            }
+        }
+        bootstrap.option(ChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(receiveBufferSize));
+        bootstrap.handler(new ChannelInitializer<DatagramChannel>() {
             @Override
-            protected void initChannel(NioDatagramChannel nioDatagramChannel) {
-                ChannelPipeline pipeline = nioDatagramChannel.pipeline();
-                pipeline.addLast(new DatagramPacketDecoder(new ProtobufDecoder(Rip.Packet.getDefaultInstance())));
-                pipeline.addLast(new DatagramPacketEncoder(new ProtobufEncoder()));
-                pipeline.addLast(channelHandler);
+            protected void initChannel(DatagramChannel datagramChannel) {
+                initPipeline(datagramChannel.pipeline());
             }
         });
-        // reusable request bytes
-        Rip.Packet pkg = Rip.Packet.newBuilder().setCommand(Rip.Packet.Command.REQUEST).setRouterId(id).build();
-        requestBytes = pkg.toByteArray();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                new ObjectName("com.yue:type=Router,id=" + id));
+        } catch (JMException e) {
+            DebugHelper.Log(DebugHelper.Level.INFO, "Metrics not registered with JMX: {}", e);
+        }
+        if (config.config_reload) {
+            configWatcher = new ConfigWatcher(Paths.get("config.txt"), next -> scheduler.schedule(() -> {
+                try {
+                    reload(next);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, 0, TimeUnit.SECONDS));
+        }
+        DebugHelper.Log(DebugHelper.Level.INFO, "start");
+        printRoutingTable();
+    }
+
+    /**
+     * set up the routing state, the transport is left to init() or to the caller, who also sets scheduler and the
+     * channels before start()
+     */
+    void init(Config config) {
+        this.config = config;
+        routerConfig = config.routers.get(id);
+        channelHandler = new RipHandler(this);
+        metrics = new RouterMetrics(this, routerConfig.neighbors, TimeUnit.SECONDS.toNanos(config.regular_timer));
+        if (config.update_queue_size > 0)
+            engine = new RoutingEngine(this, config.update_queue_size);
+        requestLimiter = new RequestLimiter(config.request_rate, config.request_burst, config.request_coalesce);
+        // reusable request buffer
+        Rip.Packet pkg = Rip.Packet.newBuilder().setCommand(Rip.Packet.Command.REQUEST).setRouterId(id)
+            .setVersion(Constants.VERSION).build();
+        requestBuf = encode(ByteBufAllocator.DEFAULT, pkg);
+        helloBuf = encode(ByteBufAllocator.DEFAULT, Rip.Packet.newBuilder().setCommand(Rip.Packet.Command.RESPONSE)
+            .setRouterId(id).setVersion(Constants.VERSION).build());
         // initialize address map and routing table
         addressMap = new ConcurrentHashMap<>();
-        routingTable = new HashMap<>();
+        responseCache = new ConcurrentHashMap<>();
+        neighbors = new ConcurrentHashMap<>();
+        for (int neighborId : routerConfig.neighbors) {
+            neighbors.put(neighborId, new Neighbor(neighborId));
+        }
+        if ("virtual".equals(config.neighbor_sessions) || "platform".equals(config.neighbor_sessions)) {
+            sessions = new ConcurrentHashMap<>();
+            for (Neighbor neighbor : neighbors.values()) {
+                sessions.put(neighbor.id, newSession(neighbor));
+            }
+        }
+        int stripes =
+            config.table_stripes > 0 ? config.table_stripes : Runtime.getRuntime().availableProcessors() * 4;
+        routingTable = new StripedRoutingTable(stripes, Math.max(config.time_out_timer, config.gc_timer) + 1);
+        RouteChanges changes = new RouteChanges();
         for (int neighborId : config.routers.get(id).neighbors) {
-            routingTable.put(neighborId, new RouterEntry(neighborId, neighborId, 1));
+            updateRoute(neighborId, neighborId, 0, changes);
         }
-        DebugHelper.Log(DebugHelper.Level.INFO, "start");
-        printRoutingTable();
+        if (config.warm_start && !config.snapshot_file.isEmpty() && Files.exists(Paths.get(config.snapshot_file)))
+            loadTable(Paths.get(config.snapshot_file));
+        tableVersion.incrementAndGet();
+    }
+
+    void initPipeline(ChannelPipeline pipeline) {
+        // flushes issued while reading a burst of packets are merged into one
+        pipeline.addLast(new FlushConsolidationHandler(config.flush_batch_size, true));
+        if (config.streaming_decoder) {
+            pipeline.addLast(new RipDecoder(this));
+        } else {
+            pipeline.addLast(new DatagramPacketDecoder(new ProtobufDecoder(Rip.Packet.getDefaultInstance())));
+        }
+        pipeline.addLast(new DatagramPacketEncoder(new ProtobufEncoder()));
+        pipeline.addLast(channelHandler);
     }
 
     public void run() throws InterruptedException {
         DebugHelper.Log(DebugHelper.Level.INFO, "running");
-        // bind udp channel
-        udpChannel = bootstrap.bind(config.protocol_port).sync().channel();
-        AtomicInteger round = new AtomicInteger();
-        // every config.regular_timer(30 by default) seconds, send Rip requests to neighbors
-        future = group.scheduleAtFixedRate(() -> {
+        // bind udp channels, several sockets share the port only with epoll SO_REUSEPORT
+        int sockets = epoll ? Math.max(config.receive_sockets, 1) : 1;
+        for (int i = 0; i < sockets; i++) {
+            udpChannels.add(bootstrap.bind(config.protocol_port).sync().channel());
+        }
+        udpChannel = udpChannels.get(0);
+        if (config.metrics_port > 0) {
+            ServerBootstrap metricsBootstrap = new ServerBootstrap();
+            metricsBootstrap.group(group).channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel socketChannel) {
+                        socketChannel.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(4096),
+                            new MetricsHandler(id, metrics));
+                    }
+                });
+            metricsChannel = metricsBootstrap.bind("127.0.0.1", config.metrics_port).sync().channel();
+        }
+        start();
+        // block for channel closing
+        for (Channel channel : udpChannels) {
+            channel.closeFuture().sync();
+        }
+        group.shutdownGracefully().sync();
+        releaseBuffers();
+    }
+
+    /**
+     * start the timers on scheduler, udpChannel has to be ready
+     */
+    void start() {
+        metrics.start();
+        if (engine != null)
+            engine.start();
+        future = scheduleRegular(0);
+        // every second, expire routes not refreshed for config.time_out_timer seconds and delete them
+        // config.gc_timer seconds later
+        expiryFuture = scheduler.scheduleAtFixedRate(() -> {
             try {
-                for (int neighborId : routerConfig.neighbors) {
-                    sendRequest(neighborId);
+                expireRoutes();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        for (Neighbor neighbor : neighbors.values()) {
+            neighbor.lastHeard = scheduler.nanoTime();
+        }
+        if (sessions != null) {
+            sessionThreads = NeighborSession.threadFactory(config.neighbor_sessions);
+            for (NeighborSession session : sessions.values()) {
+                session.start(sessionThreads);
+            }
+        } else {
+            livenessFuture = scheduleLiveness();
+        }
+        dumpFuture = scheduleDump();
+        saveFuture = scheduleSave();
+        // auto shutdown in config.shutdown_timer seconds
+        if (config.shutdown_timer > 0) {
+            scheduler.schedule(() -> {
+                closeChannel();
+            }, config.shutdown_timer, TimeUnit.SECONDS);
+        }
+        if (configWatcher != null) {
+            try {
+                configWatcher.start();
+            } catch (IOException e) {
+                DebugHelper.Log(DebugHelper.Level.INFO, "Config not watched: {}", e);
+            }
+        }
+    }
+
+    /**
+     * every config.regular_timer(30 by default) seconds, send Rip requests to neighbors, sessions send their own
+     */
+    private Future<?> scheduleRegular(long delay) {
+        return scheduler.scheduleAtFixedRate(() -> {
+            try {
+                if (sessions == null) {
+                    for (int neighborId : routerConfig.neighbors) {
+                        sendRequest(neighborId);
+                    }
+                    flush();
                 }
                 if (routerConfig.actions != null && routerConfig.actions.containsKey(round.get())) {
                     executeAction(routerConfig.actions.get(round.get()));
@@ -127,22 +353,266 @@ public class Router {
             } catch (Exception e) {
                 e.printStackTrace();
             }
-        }, 0, config.regular_timer, TimeUnit.SECONDS);
-        // auto shutdown in config.shutdown_timer seconds
-        if (config.shutdown_timer > 0) {
-            group.schedule(() -> {
-                closeChannel();
-            }, config.shutdown_timer, TimeUnit.SECONDS);
+        }, delay, config.regular_timer, TimeUnit.SECONDS);
+    }
+
+    /**
+     * every config.hello_interval milliseconds, or config.regular_timer seconds without keepalives, check that
+     * neighbors are still heard from
+     */
+    private Future<?> scheduleLiveness() {
+        long livenessInterval = livenessInterval();
+        return scheduler.scheduleAtFixedRate(() -> {
+            try {
+                checkNeighbors(livenessInterval);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, livenessInterval, livenessInterval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * every config.table_dump_timer seconds, print the whole routing table, otherwise only changes are printed
+     */
+    private Future<?> scheduleDump() {
+        if (config.table_dump_timer <= 0)
+            return null;
+        return scheduler.scheduleAtFixedRate(this::printRoutingTable, config.table_dump_timer,
+            config.table_dump_timer, TimeUnit.SECONDS);
+    }
+
+    /**
+     * every config.snapshot_timer seconds, save the routing table to config.snapshot_file if it changed
+     */
+    private Future<?> scheduleSave() {
+        if (config.snapshot_file.isEmpty() || config.snapshot_timer <= 0)
+            return null;
+        return scheduler.scheduleAtFixedRate(this::saveTable, config.snapshot_timer, config.snapshot_timer,
+            TimeUnit.SECONDS);
+    }
+
+    /**
+     * write the latest snapshot on the dump thread, the event loops do not wait for the disk
+     */
+    void saveTable() {
+        if (tableVersion.get() == savedVersion || !savePending.compareAndSet(false, true))
+            return;
+        DebugHelper.schedule(() -> {
+            savePending.set(false);
+            RoutingSnapshot routes = getSnapshot();
+            Path file = Paths.get(config.snapshot_file);
+            try {
+                int count = TableFile.save(file, id, routes);
+                savedVersion = routes.getVersion();
+                if (DebugHelper.isEnabled(DebugHelper.Level.DEBUG))
+                    DebugHelper.Log(DebugHelper.Level.DEBUG, "Saved {} routes to {}", count, file);
+            } catch (IOException e) {
+                DebugHelper.Log(DebugHelper.Level.INFO, "Routing table not saved: {}", e);
+            }
+        }, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * seed the routing table with the routes saved before a restart, through neighbors that are still configured.
+     * They are stale until confirmed: unless their next hop advertises them again they time out config.stale_timer
+     * seconds from now, not config.time_out_timer. They are not advertised as changes
+     */
+    private void loadTable(Path file) {
+        int now = clock.get();
+        int stale = Math.max(1, Math.min(config.stale_timer, config.time_out_timer));
+        int[] loaded = new int[1];
+        long savedAt;
+        try {
+            savedAt = TableFile.load(file, id, (dest, nextHop, metric) -> {
+                if (dest == id || dest <= 0 || !neighbors.containsKey(nextHop) || metric < 1
+                    || metric >= Constants.INFINITE)
+                    return;
+                RoutingTable stripe = routingTable.stripeFor(dest);
+                synchronized (stripe) {
+                    if (stripe.indexOf(dest) >= 0) // direct routes are kept
+                        return;
+                    int slot = stripe.put(dest, nextHop, metric);
+                    stripe.setRefreshed(slot, now - (config.time_out_timer - stale));
+                    routingTable.wheelFor(dest).schedule(dest, stale);
+                }
+                loaded[0]++;
+            });
+        } catch (IOException e) {
+            DebugHelper.Log(DebugHelper.Level.INFO, "Cold start, routing table not loaded: {}", e);
+            return;
         }
-        // block for channel closing
-        udpChannel.closeFuture().sync();
-        group.shutdownGracefully();
+        DebugHelper.Log(DebugHelper.Level.INFO, "Loaded {} stale routes saved {} s ago",
+            loaded[0], (System.currentTimeMillis() - savedAt) / 1000);
+    }
+
+    private NeighborSession newSession(Neighbor neighbor) {
+        return new NeighborSession(this, neighbor, TimeUnit.SECONDS.toNanos(config.regular_timer), livenessInterval());
     }
 
-    private void closeChannel() {
+    /**
+     * apply a changed config.txt in place, on the scheduler: neighbors are added and removed, timers retuned and
+     * addresses looked up again, the routing table is kept. Settings of sockets, threads and the table layout only
+     * change on restart
+     */
+    void reload(Config next) {
+        Config.RouterConfig nextRouter = next.routers == null ? null : next.routers.get(id);
+        if (nextRouter == null || nextRouter.neighbors == null) {
+            DebugHelper.Log(DebugHelper.Level.INFO, "Config not reloaded, router {} is missing", id);
+            return;
+        }
+        Config prev = config;
+        // running values are kept until restart, neighbors are still sent to the port they listen on now
+        next.protocol_port = restartOnly("protocol_port", prev.protocol_port, next.protocol_port);
+        next.transport = restartOnly("transport", prev.transport, next.transport);
+        next.receive_sockets = restartOnly("receive_sockets", prev.receive_sockets, next.receive_sockets);
+        next.recvmmsg_batch = restartOnly("recvmmsg_batch", prev.recvmmsg_batch, next.recvmmsg_batch);
+        next.max_datagram_size = restartOnly("max_datagram_size", prev.max_datagram_size, next.max_datagram_size);
+        if (epoll && prev.recvmmsg_batch > 1) // sending follows max_packet_size at once, the recvmmsg slots do not
+            restartOnly("max_packet_size of received datagrams", prev.max_packet_size, next.max_packet_size);
+        next.streaming_decoder = restartOnly("streaming_decoder", prev.streaming_decoder, next.streaming_decoder);
+        next.table_stripes = restartOnly("table_stripes", prev.table_stripes, next.table_stripes);
+        next.update_queue_size = restartOnly("update_queue_size", prev.update_queue_size, next.update_queue_size);
+        next.neighbor_sessions = restartOnly("neighbor_sessions", prev.neighbor_sessions, next.neighbor_sessions);
+        next.metrics_port = restartOnly("metrics_port", prev.metrics_port, next.metrics_port);
+        next.shutdown_timer = restartOnly("shutdown_timer", prev.shutdown_timer, next.shutdown_timer);
+        Set<Integer> removed = new TreeSet<>();
+        for (int neighborId : routerConfig.neighbors)
+            removed.add(neighborId);
+        Set<Integer> added = new TreeSet<>();
+        for (int neighborId : nextRouter.neighbors) {
+            if (!removed.remove(neighborId))
+                added.add(neighborId);
+        }
+        long prevLiveness = livenessInterval();
+        config = next;
+        routerConfig = nextRouter;
+        addressMap.clear(); // addresses are looked up again from the new config
+        if (prev.max_packet_size != next.max_packet_size) {
+            for (Integer neighborId : responseCache.keySet())
+                releaseResponse(neighborId);
+        }
+        if (prev.request_rate != next.request_rate || prev.request_burst != next.request_burst
+            || prev.request_coalesce != next.request_coalesce)
+            requestLimiter = new RequestLimiter(next.request_rate, next.request_burst, next.request_coalesce);
+        RouteChanges changes = new RouteChanges();
+        for (int neighborId : removed)
+            removeNeighbor(neighborId, changes);
+        for (int neighborId : added)
+            addNeighbor(neighborId, changes);
+        onRouteTableUpdated(changes);
+        if (future != null) { // started, retune the timers
+            if (prev.regular_timer != next.regular_timer) {
+                future.cancel(false);
+                future = scheduleRegular(next.regular_timer);
+            }
+            if (prevLiveness != livenessInterval() || prev.regular_timer != next.regular_timer) {
+                if (livenessFuture != null) {
+                    livenessFuture.cancel(false);
+                    livenessFuture = scheduleLiveness();
+                }
+                if (sessions != null) {
+                    for (NeighborSession session : sessions.values())
+                        session.retune(TimeUnit.SECONDS.toNanos(next.regular_timer), livenessInterval());
+                }
+            }
+            if (prev.table_dump_timer != next.table_dump_timer) {
+                if (dumpFuture != null)
+                    dumpFuture.cancel(false);
+                dumpFuture = scheduleDump();
+            }
+            if (prev.snapshot_timer != next.snapshot_timer || !prev.snapshot_file.equals(next.snapshot_file)) {
+                if (saveFuture != null)
+                    saveFuture.cancel(false);
+                saveFuture = scheduleSave();
+            }
+        }
+        DebugHelper.Log(DebugHelper.Level.INFO, "Config reloaded, neighbors added {} removed {}", added, removed);
+    }
+
+    /**
+     * @return prev, the value in use until restart
+     */
+    private static <T> T restartOnly(String name, T prev, T next) {
+        if (!Objects.equals(prev, next))
+            DebugHelper.Log(DebugHelper.Level.INFO, "{} changes on restart only", name);
+        return prev;
+    }
+
+    /**
+     * start exchanging routes with a new neighbor, it is asked for its routing table right away
+     */
+    private void addNeighbor(int neighborId, RouteChanges changes) {
+        Neighbor neighbor = new Neighbor(neighborId);
+        neighbor.lastHeard = nanoTime();
+        neighbors.put(neighborId, neighbor);
+        metrics.lastUpdates.putIfAbsent(neighborId, new AtomicLong(Long.MIN_VALUE));
+        updateRoute(neighborId, neighborId, 0, changes);
+        if (sessions != null) {
+            NeighborSession session = newSession(neighbor);
+            sessions.put(neighborId, session);
+            if (sessionThreads != null)
+                session.start(sessionThreads);
+        } else if (future != null && udpChannel != null && udpChannel.isActive()) {
+            sendRequest(neighborId);
+            flush();
+        }
+    }
+
+    /**
+     * forget a neighbor that is no longer configured, the routes through it are withdrawn and its packets dropped
+     */
+    private void removeNeighbor(int neighborId, RouteChanges changes) {
+        neighbors.remove(neighborId);
+        metrics.lastUpdates.remove(neighborId);
+        if (sessions != null) {
+            NeighborSession session = sessions.remove(neighborId);
+            if (session != null)
+                session.stop();
+        }
+        neighborVersions.remove(neighborId);
+        releaseResponse(neighborId);
+        routingTable.forEachVia(neighborId, (stripe, dest) -> withdraw(stripe, dest, changes));
+    }
+
+    private void releaseResponse(int neighborId) {
+        responseCache.computeIfPresent(neighborId, (k, cached) -> {
+            cached.release();
+            return null;
+        });
+    }
+
+    void releaseBuffers() {
+        requestBuf.release();
+        helloBuf.release();
+        for (Integer neighborId : responseCache.keySet()) {
+            releaseResponse(neighborId);
+        }
+    }
+
+    void closeChannel() {
         if (future != null && udpChannel != null) {
             future.cancel(true);
-            udpChannel.close();
+            expiryFuture.cancel(true);
+            if (livenessFuture != null)
+                livenessFuture.cancel(true);
+            if (engine != null)
+                engine.stop();
+            if (sessions != null) {
+                for (NeighborSession session : sessions.values()) {
+                    session.stop();
+                }
+            }
+            if (dumpFuture != null)
+                dumpFuture.cancel(true);
+            if (configWatcher != null)
+                configWatcher.stop();
+            if (saveFuture != null)
+                saveFuture.cancel(true);
+            for (Channel channel : udpChannels) {
+                channel.close();
+            }
+            if (metricsChannel != null)
+                metricsChannel.close();
             DebugHelper.Log(DebugHelper.Level.INFO, "Close channel.");
         }
     }
@@ -152,11 +622,17 @@ public class Router {
             case DISCONNECT: // simulating disconnection
                 Rip.Packet pkg =
                     Rip.Packet.newBuilder().setCommand(Rip.Packet.Command.DISCONNECT).setRouterId(id).build();
-                byte[] bytes = pkg.toByteArray();
+                ByteBuf buf = encode(udpChannel.alloc(), pkg);
                 for (int neighborId : routerConfig.neighbors) {
-                    DebugHelper.Log(DebugHelper.Level.INFO, "Disconnect with " + neighborId);
-                    sendUdpMessage(neighborId, bytes);
+                    DebugHelper.Log(DebugHelper.Level.INFO, "Disconnect with {}", neighborId);
+                    sendUdpMessage(neighborId, Rip.Packet.Command.DISCONNECT, buf.retainedDuplicate());
                 }
+                flush();
+                buf.release();
+                closeChannel();
+                break;
+            case CRASH: // simulating a crash, neighbors have to notice by themselves
+                DebugHelper.Log(DebugHelper.Level.INFO, "Crash");
                 closeChannel();
                 break;
             default:
@@ -164,91 +640,544 @@ public class Router {
         }
     }
 
-    private byte[] getRoutingTableBytes(int to) {
-        Rip.Packet.Builder builder = Rip.Packet.newBuilder().setCommand(Rip.Packet.Command.RESPONSE).setRouterId(id);
-        for (RouterEntry routerEntry : routingTable.values()) {
+    /**
+     * @return time of the scheduler, wall clock time before there is one
+     */
+    long nanoTime() {
+        return scheduler == null ? System.nanoTime() : scheduler.nanoTime();
+    }
+
+    /**
+     * snapshot of the current routing table version. Changes only bump tableVersion, the table is copied here once
+     * a reader needs the new version, so a burst of RESPONSE packets costs one copy instead of one per packet
+     */
+    public RoutingSnapshot getSnapshot() {
+        RoutingSnapshot current = snapshot.get();
+        if (current.getVersion() == tableVersion.get())
+            return current;
+        synchronized (snapshot) { // one reader copies the table, the others wait for its copy
+            current = snapshot.get();
+            long version = tableVersion.get(); // read before copying, later changes make the copy stale again
+            if (current.getVersion() != version) {
+                current = RoutingSnapshot.of(version, routingTable);
+                snapshot.set(current);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * full response for a neighbor, encoded once per snapshot version
+     *
+     * @return retained duplicates of the cached buffers, released by the channel once written
+     */
+    List<ByteBuf> getRoutingTableBytes(int to) {
+        RoutingSnapshot routes = getSnapshot();
+        boolean compact = isCompact(to);
+        List<ByteBuf> duplicates = new ArrayList<>();
+        // cached buffers are only released and retained inside compute, which is atomic per neighbor
+        responseCache.compute(to, (k, cached) -> {
+            if (cached == null || cached.version < routes.getVersion() || cached.compact != compact) {
+                if (cached != null)
+                    cached.release();
+                cached = new CachedResponse(routes.getVersion(), compact,
+                    encode(udpChannel.alloc(), getRoutingTablePackets(to, routes::forEach)));
+            }
+            for (ByteBuf buf : cached.bufs) {
+                duplicates.add(buf.retainedDuplicate());
+            }
+            return cached;
+        });
+        return duplicates;
+    }
+
+    /**
+     * compact entries are only sent to neighbors that announced version 2 or later
+     */
+    private boolean isCompact(int to) {
+        return neighborVersions.getOrDefault(to, 1) >= Constants.VERSION;
+    }
+
+    /**
+     * packets from routers that are not neighbors are dropped, they are counted here
+     */
+    boolean acceptsFrom(int routerId) {
+        if (neighbors.containsKey(routerId))
+            return true;
+        metrics.onDropped(RouterMetrics.DROP.UNKNOWN_SOURCE);
+        if (DebugHelper.isEnabled(DebugHelper.Level.DEBUG))
+            DebugHelper.Log(DebugHelper.Level.DEBUG, "Dropped packet from unknown router {}", routerId);
+        return false;
+    }
+
+    /**
+     * any packet from a neighbor shows it is alive
+     */
+    void heardFrom(int neighborId) {
+        Neighbor neighbor = neighbors.get(neighborId);
+        if (neighbor != null)
+            neighbor.lastHeard = nanoTime();
+    }
+
+    /**
+     * @return nanoseconds between liveness checks, config.hello_interval or config.regular_timer without keepalives
+     */
+    private long livenessInterval() {
+        return config.hello_interval > 0 ? TimeUnit.MILLISECONDS.toNanos(config.hello_interval)
+            : TimeUnit.SECONDS.toNanos(config.regular_timer);
+    }
+
+    /**
+     * send keepalives if enabled, then check every neighbor
+     */
+    private void checkNeighbors(long interval) {
+        for (int neighborId : routerConfig.neighbors) {
+            sendHello(neighborId);
+        }
+        flush();
+        long now = scheduler.nanoTime();
+        for (Neighbor neighbor : neighbors.values()) {
+            checkNeighbor(neighbor, interval, now);
+        }
+    }
+
+    /**
+     * queue a keepalive if enabled
+     */
+    void sendHello(int to) {
+        if (config.hello_interval > 0 && udpChannel != null && udpChannel.isActive())
+            sendUdpMessage(to, Rip.Packet.Command.RESPONSE, helloBuf.retainedDuplicate());
+    }
+
+    /**
+     * mark a neighbor not heard for config.dead_count intervals down and poison the routes through it. A neighbor
+     * heard again is up
+     */
+    void checkNeighbor(Neighbor neighbor, long interval, long now) {
+        neighbor.missed = (int)Math.min((now - neighbor.lastHeard) / interval, Integer.MAX_VALUE);
+        if (!neighbor.down && neighbor.missed >= config.dead_count) {
+            neighbor.downAt = now;
+            neighbor.down = true;
+            DebugHelper.Log(DebugHelper.Level.INFO, "Neighbor {} down", neighbor.id);
+            withdrawVia(neighbor.id);
+        } else if (neighbor.down && neighbor.lastHeard > neighbor.downAt) {
+            neighbor.down = false;
+            DebugHelper.Log(DebugHelper.Level.INFO, "Neighbor {} up", neighbor.id);
+        }
+    }
+
+    public void setNeighborVersion(int neighborId, int version) {
+        Integer known = neighborVersions.get(neighborId);
+        if (known == null || known != version)
+            neighborVersions.put(neighborId, version);
+    }
+
+    /**
+     * split routes into as many RESPONSE packets as needed to keep each one within config.max_packet_size bytes
+     */
+    private List<Rip.Packet> getRoutingTablePackets(int to, Consumer<RoutingTable.RouteVisitor> routes) {
+        ResponsePacker packer = new ResponsePacker(id, config.max_packet_size, isCompact(to));
+        routes.accept((dest, nextHop, metric) -> {
             // do not advertise if next hop is the neighbor
-            if (mode == MODE.SPLIT_HORIZON && routerEntry.nextHop == to) {
-                continue;
+            if (mode == MODE.SPLIT_HORIZON && nextHop == to) {
+                return;
             }
-            Rip.Packet.RouterEntry.Builder entryBuilder = Rip.Packet.RouterEntry.newBuilder();
-            entryBuilder.setDest(routerEntry.dest).setNextHop(routerEntry.nextHop);
             // advertise infinite if next hop is the neighbor
-            if (mode == MODE.SPLIT_HORIZON_WITH_POISON_REVERSE && routerEntry.nextHop == to) {
-                entryBuilder.setMetric(Constants.INFINITE);
+            if (mode == MODE.SPLIT_HORIZON_WITH_POISON_REVERSE && nextHop == to) {
+                packer.add(dest, nextHop, Constants.INFINITE);
             } else {
-                entryBuilder.setMetric(routerEntry.getMetric());
+                packer.add(dest, nextHop, metric);
             }
-            builder.addRouterEntries(entryBuilder);
+        });
+        return packer.finish();
+    }
+
+    private static List<ByteBuf> encode(ByteBufAllocator alloc, List<Rip.Packet> packets) {
+        List<ByteBuf> bufs = new ArrayList<>(packets.size());
+        for (Rip.Packet pkg : packets) {
+            bufs.add(encode(alloc, pkg));
+        }
+        return bufs;
+    }
+
+    /**
+     * serialize a packet straight into a direct buffer, without the intermediate byte array
+     */
+    static ByteBuf encode(ByteBufAllocator alloc, Rip.Packet pkg) {
+        int size = pkg.getSerializedSize();
+        ByteBuf buf = alloc.directBuffer(size, size);
+        try {
+            CodedOutputStream output = CodedOutputStream.newInstance(buf.nioBuffer(buf.writerIndex(), size));
+            pkg.writeTo(output);
+            output.checkNoSpaceLeft();
+        } catch (IOException e) {
+            buf.release();
+            throw new RuntimeException("Serializing to a direct buffer threw an IOException (should never happen).", e);
         }
-        return builder.build().toByteArray();
+        return buf.writerIndex(size);
     }
 
-    private void sendUdpMessage(int to, byte[] bytes) {
+    /**
+     * queue an encoded packet, the channel takes ownership of buf. Packets are flushed by flush() or once
+     * config.flush_batch_size of them are pending
+     */
+    private void sendUdpMessage(int to, Rip.Packet.Command command, ByteBuf buf) {
         InetSocketAddress address =
             addressMap.computeIfAbsent(to, k -> new InetSocketAddress(config.routers.get(to).ip, config.protocol_port));
-        ByteBuf byteBuf = Unpooled.wrappedBuffer(bytes);// TODO
-        DatagramPacket packet = new DatagramPacket(byteBuf, address);
-        udpChannel.writeAndFlush(packet);
+        metrics.onSent(command, buf.readableBytes());
+        DatagramPacket packet = new DatagramPacket(buf, address);
+        udpChannel.write(packet);
+        if (pendingWrites.incrementAndGet() >= config.flush_batch_size)
+            flush();
+    }
+
+    void flush() {
+        int count = pendingWrites.getAndSet(0);
+        if (count > 0) {
+            if (DebugHelper.isEnabled(DebugHelper.Level.DEBUG))
+                DebugHelper.Log(DebugHelper.Level.DEBUG, "Flush {} packets", count);
+            udpChannel.flush();
+        }
     }
 
     public void sendRequest(int to) {
-        DebugHelper.Log(DebugHelper.Level.INFO, "Send request to " + to);
-        sendUdpMessage(to, requestBytes);
+        if (DebugHelper.isEnabled(DebugHelper.Level.DEBUG))
+            DebugHelper.Log(DebugHelper.Level.DEBUG, "Send request to {}", to);
+        sendUdpMessage(to, Rip.Packet.Command.REQUEST, requestBuf.retainedDuplicate());
+    }
+
+    /**
+     * answer a REQUEST, on the neighbor's session if it has one, unless the limiter drops it
+     */
+    void handleRequest(int from) {
+        RouterMetrics.DROP drop = requestLimiter.onRequest(from, nanoTime(), tableVersion.get());
+        if (drop != null) {
+            metrics.onDropped(drop);
+            if (DebugHelper.isEnabled(DebugHelper.Level.DEBUG))
+                DebugHelper.Log(DebugHelper.Level.DEBUG, "REQUEST from {} {}", from, drop);
+            return;
+        }
+        NeighborSession session = sessionOf(from);
+        if (session != null)
+            session.offerRequest();
+        else
+            sendResponse(from);
     }
 
     public void sendResponse(int to) {
-        DebugHelper.Log(DebugHelper.Level.INFO, "Send response to " + to);
-        sendUdpMessage(to, getRoutingTableBytes(to));
-    }
-
-    public void updateRouteTable(int from, List<Rip.Packet.RouterEntry> list) {
-        synchronized (routingTable) { // block
-            for (Rip.Packet.RouterEntry entry : list) {
-                if (entry.getDest() == id) // dest cannot be the router itself
-                    continue;
-                if (!routingTable.containsKey(entry.getDest())) { // destination not exists
-                    if (entry.getMetric() < Constants.INFINITE) { // if metric < 16, add entry to routing
-                        RouterEntry routerEntry = new RouterEntry(entry.getDest(), from, entry.getMetric() + 1);
-                        routingTable.put(routerEntry.dest, routerEntry);
-                    }
-                } else {
-                    RouterEntry routerEntry = routingTable.get(entry.getDest());
-                    int metric = entry.getMetric() + 1;
-                    // if next hop is the sender of response message, update metric by force
-                    if (routerEntry.nextHop == from) {
-                        routerEntry.setMetric(metric);
-                    } else {
-                        // if new path is shorter, update routing table
-                        if (metric < routerEntry.getMetric()) {
-                            routerEntry.setMetric(metric);
-                            routerEntry.nextHop = from;
-                        }
-                    }
-                }
+        if (DebugHelper.isEnabled(DebugHelper.Level.DEBUG))
+            DebugHelper.Log(DebugHelper.Level.DEBUG, "Send response to {}", to);
+        for (ByteBuf buf : getRoutingTableBytes(to)) {
+            sendUdpMessage(to, Rip.Packet.Command.RESPONSE, buf);
+        }
+        flush();
+    }
+
+    /**
+     * schedule a triggered update in 1 ~ config.triggered_timer seconds, changes made before it fires are coalesced
+     */
+    private void scheduleTriggeredUpdate() {
+        if (scheduler == null || !triggerPending.compareAndSet(false, true))
+            return;
+        scheduler.schedule(this::sendTriggeredUpdate, triggeredDelay(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return random milliseconds in 1 ~ config.triggered_timer seconds
+     */
+    long triggeredDelay() {
+        return 1000 + random.nextInt(Math.max(config.triggered_timer, 1) * 1000 - 999);
+    }
+
+    /**
+     * send changed routes only, sorted by destination like a full response, full routing table is still sent on
+     * every request
+     */
+    private void sendTriggeredUpdate() {
+        triggerPending.set(false);
+        RoutingSnapshot changedRoutes = RoutingSnapshot.of(tableVersion.get(), 16, routingTable::drainChanged);
+        if (changedRoutes.size() == 0 || udpChannel == null || !udpChannel.isActive())
+            return;
+        for (int neighborId : routerConfig.neighbors) {
+            NeighborSession session = sessionOf(neighborId);
+            if (session != null)
+                session.offerTriggered(changedRoutes);
+            else
+                sendRoutes(neighborId, changedRoutes);
+        }
+        flush();
+    }
+
+    /**
+     * queue a triggered update of routes to a neighbor
+     */
+    void sendRoutes(int to, RoutingSnapshot routes) {
+        if (DebugHelper.isEnabled(DebugHelper.Level.DEBUG))
+            DebugHelper.Log(DebugHelper.Level.DEBUG, "Send triggered update to {}", to);
+        for (Rip.Packet pkg : getRoutingTablePackets(to, routes::forEach)) {
+            sendUdpMessage(to, Rip.Packet.Command.RESPONSE, encode(udpChannel.alloc(), pkg));
+        }
+    }
+
+    /**
+     * apply a RESPONSE carrying routerEntries, compact entries or both, or queue it for the neighbor's session or
+     * the routing engine
+     */
+    public void updateRouteTable(int from, Rip.Packet pkg) {
+        NeighborSession session = sessionOf(from);
+        if (queuesUpdates(session)) {
+            RoutingEngine.Update update =
+                new RoutingEngine.Update(from, pkg.getRouterEntriesCount() + pkg.getDestsCount());
+            for (Rip.Packet.RouterEntry entry : pkg.getRouterEntriesList()) {
+                update.add(entry.getDest(), entry.getMetric());
             }
+            int count = Math.min(pkg.getDestsCount(), pkg.getMetricsCount());
+            int dest = 0;
+            for (int i = 0; i < count; i++) {
+                dest += pkg.getDests(i); // delta encoded
+                update.add(dest, pkg.getMetrics(i));
+            }
+            offerUpdate(session, update);
+            return;
         }
-        printRoutingTable();
+        long start = System.nanoTime();
+        RouteChanges changes = new RouteChanges();
+        refreshNeighbor(from, changes);
+        for (Rip.Packet.RouterEntry entry : pkg.getRouterEntriesList()) {
+            updateRoute(from, entry.getDest(), entry.getMetric(), changes);
+        }
+        int count = Math.min(pkg.getDestsCount(), pkg.getMetricsCount());
+        int dest = 0;
+        for (int i = 0; i < count; i++) {
+            dest += pkg.getDests(i); // delta encoded
+            updateRoute(from, dest, pkg.getMetrics(i), changes);
+        }
+        onRouteTableUpdated(changes);
+        metrics.onUpdate(from, System.nanoTime() - start);
     }
 
-    private void printRoutingTable() {
-        AsciiTable at = new AsciiTable();
-        at.addRule();
-        at.addRow(null, null, "Router " + id);
-        at.addRule();
-        at.addRow("Destination", "Next Hop", "Metric");
-        for (RouterEntry routerEntry : routingTable.values()) {
-            at.addRule();
-            at.addRow(routerEntry.dest, routerEntry.nextHop, routerEntry.metric);
+    /**
+     * look a neighbor's session up once per packet and pass it on, a reload may remove it from sessions meanwhile
+     *
+     * @return null if the neighbor has no session
+     */
+    NeighborSession sessionOf(int from) {
+        return sessions == null ? null : sessions.get(from);
+    }
+
+    /**
+     * @param session sessionOf the neighbor
+     * @return true if the neighbor's RESPONSEs are applied by its session or the routing engine, not by the caller
+     */
+    boolean queuesUpdates(NeighborSession session) {
+        return session != null || engine != null;
+    }
+
+    /**
+     * hand update to session, or to the routing engine without one, dropping it if the queue is full. A session
+     * stopped by a reload since it was looked up drops the update with the rest of its inbox
+     */
+    void offerUpdate(NeighborSession session, RoutingEngine.Update update) {
+        if (session != null)
+            session.offerUpdate(update);
+        else
+            engine.offer(update);
+    }
+
+    /**
+     * apply the routes of a queued RESPONSE, onRouteTableUpdated has to follow
+     */
+    void applyUpdate(RoutingEngine.Update update, RouteChanges changes) {
+        long start = System.nanoTime();
+        refreshNeighbor(update.from, changes);
+        for (int i = 0; i < update.size; i++) {
+            updateRoute(update.from, update.dests[i], update.metrics[i], changes);
         }
-        at.addRule();
-        DebugHelper.Log(DebugHelper.Level.INFO, "\n" + at.render());
+        metrics.onUpdate(update.from, System.nanoTime() - start);
+    }
+
+    /**
+     * mark the snapshot stale and advertise the changes of one packet or expiry pass, and print them
+     */
+    void onRouteTableUpdated(RouteChanges changes) {
+        if (changes.isEmpty())
+            return;
+        metrics.onChanged(changes);
+        tableVersion.incrementAndGet();
+        scheduleTriggeredUpdate();
+        if (DebugHelper.isEnabled(DebugHelper.Level.INFO))
+            DebugHelper.Log(DebugHelper.Level.INFO, "Router {} routes {}", id, changes);
     }
 
+    /**
+     * a neighbor does not advertise itself, any RESPONSE from it refreshes the direct route at metric 1
+     *
+     * @return true if the routing table changed
+     */
+    boolean refreshNeighbor(int from, RouteChanges changes) {
+        return updateRoute(from, from, 0, changes);
+    }
+
+    /**
+     * apply one advertised route, onRouteTableUpdated has to follow once the whole packet is applied
+     *
+     * @return true if the routing table changed, the change is added to changes
+     */
+    boolean updateRoute(int from, int dest, int advertisedMetric, RouteChanges changes) {
+        if (dest == id || dest <= 0) // dest cannot be the router itself, router ids are positive
+            return false;
+        RoutingTable stripe = routingTable.stripeFor(dest);
+        synchronized (stripe) { // block other writers of this stripe only
+            return updateRoute(stripe, from, dest, advertisedMetric, changes);
+        }
+    }
+
+    /**
+     * apply one advertised route, caller holds the stripe lock
+     *
+     * @return true if the routing table changed
+     */
+    private boolean updateRoute(RoutingTable stripe, int from, int dest, int advertisedMetric,
+        RouteChanges changes) {
+        int now = clock.get();
+        int slot = stripe.indexOf(dest);
+        if (slot < 0) { // destination not exists
+            if (advertisedMetric + 1 < Constants.INFINITE) { // if metric < 16, add entry to routing
+                slot = stripe.put(dest, from, advertisedMetric + 1);
+                stripe.setRefreshed(slot, now);
+                stripe.setChanged(slot);
+                routingTable.wheelFor(dest).schedule(dest, config.time_out_timer);
+                changes.add(RouteChanges.KIND.ADDED, dest, from, advertisedMetric + 1);
+                return true;
+            }
+            return false;
+        }
+        int metric = Math.min(advertisedMetric + 1, Constants.INFINITE);
+        // if next hop is the sender of response message, update metric by force
+        if (stripe.getNextHop(slot) == from) {
+            // restart the timeout, or the garbage collection timer when the route just became infinite
+            if (metric < Constants.INFINITE || stripe.getMetric(slot) < Constants.INFINITE)
+                stripe.setRefreshed(slot, now);
+            if (metric != stripe.getMetric(slot)) {
+                stripe.setMetric(slot, metric);
+                stripe.setChanged(slot);
+                changes.add(metric < Constants.INFINITE ? RouteChanges.KIND.MODIFIED : RouteChanges.KIND.WITHDRAWN,
+                    dest, from, metric);
+                return true;
+            }
+        } else {
+            // if new path is shorter, update routing table
+            if (metric < stripe.getMetric(slot)) {
+                stripe.setMetric(slot, metric);
+                stripe.setNextHop(slot, from);
+                stripe.setRefreshed(slot, now);
+                stripe.setChanged(slot);
+                changes.add(RouteChanges.KIND.MODIFIED, dest, from, metric);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * advance the clock and check the routes due in this second
+     */
+    private void expireRoutes() {
+        int now = clock.incrementAndGet();
+        RouteChanges changes = new RouteChanges(); // timed out
+        int[] deleted = new int[1];
+        routingTable.expire((stripe, dest) -> {
+            int slot = stripe.indexOf(dest);
+            if (slot < 0)
+                return 0;
+            int age = now - stripe.getRefreshed(slot);
+            if (stripe.getMetric(slot) < Constants.INFINITE) {
+                if (age < config.time_out_timer)
+                    return config.time_out_timer - age;
+                // timed out, advertise as unreachable until garbage collected
+                stripe.setMetric(slot, Constants.INFINITE);
+                stripe.setRefreshed(slot, now);
+                stripe.setChanged(slot);
+                changes.add(RouteChanges.KIND.WITHDRAWN, dest, stripe.getNextHop(slot), Constants.INFINITE);
+                return config.gc_timer;
+            }
+            if (age < config.gc_timer)
+                return config.gc_timer - age;
+            stripe.remove(dest);
+            deleted[0]++;
+            return 0;
+        });
+        if (deleted[0] > 0) {
+            DebugHelper.Log(DebugHelper.Level.INFO, "{} routes deleted", deleted[0]);
+            if (changes.isEmpty()) // deleted routes were already advertised as infinite
+                tableVersion.incrementAndGet();
+        }
+        onRouteTableUpdated(changes);
+    }
+
+    /**
+     * dump the whole latest snapshot on the dump thread, at most once per config.table_dump_interval. Requests made
+     * while a dump is pending are covered by it
+     */
+    public void printRoutingTable() {
+        if (!DebugHelper.isEnabled(DebugHelper.Level.INFO) || !dumpPending.compareAndSet(false, true))
+            return;
+        long interval = TimeUnit.MILLISECONDS.toNanos(config.table_dump_interval);
+        long delay = Math.min(Math.max(lastDump + interval - System.nanoTime(), 0), interval);
+        DebugHelper.schedule(() -> {
+            dumpPending.set(false);
+            lastDump = System.nanoTime();
+            AsciiTable at = new AsciiTable();
+            at.addRule();
+            at.addRow(null, null, "Router " + id);
+            at.addRule();
+            at.addRow("Destination", "Next Hop", "Metric");
+            getSnapshot().forEach((dest, nextHop, metric) -> {
+                at.addRule();
+                at.addRow(dest, nextHop, metric);
+            });
+            at.addRule();
+            DebugHelper.Log(DebugHelper.Level.INFO, "\n" + at.render());
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * poison every route through neighborId and start their garbage collection, found through the next hop index
+     */
+    void withdrawVia(int neighborId) {
+        RouteChanges changes = new RouteChanges();
+        routingTable.forEachVia(neighborId, (stripe, dest) -> withdraw(stripe, dest, changes));
+        onRouteTableUpdated(changes);
+    }
+
+    /**
+     * caller holds the stripe lock
+     */
+    private void withdraw(RoutingTable stripe, int dest, RouteChanges changes) {
+        int slot = stripe.indexOf(dest);
+        if (slot < 0 || stripe.getMetric(slot) == Constants.INFINITE) // already withdrawn
+            return;
+        stripe.setRefreshed(slot, clock.get()); // start garbage collection
+        stripe.setMetric(slot, Constants.INFINITE);
+        stripe.setChanged(slot);
+        changes.add(RouteChanges.KIND.WITHDRAWN, dest, stripe.getNextHop(slot), Constants.INFINITE);
+    }
+
+    /**
+     * the neighbor is gone, withdraw the route to it and every route through it
+     */
     public void disconnect(int routeId) {
-        synchronized (routingTable) {
-            routingTable.get(routeId).setMetric(Constants.INFINITE);
+        Neighbor neighbor = neighbors.get(routeId);
+        if (neighbor != null) {
+            neighbor.downAt = nanoTime();
+            neighbor.down = true;
         }
-        printRoutingTable();
+        RouteChanges changes = new RouteChanges();
+        RoutingTable stripe = routingTable.stripeFor(routeId);
+        synchronized (stripe) {
+            withdraw(stripe, routeId, changes);
+        }
+        routingTable.forEachVia(routeId, (via, dest) -> withdraw(via, dest, changes));
+        onRouteTableUpdated(changes);
     }
 }
@@ -0,0 +1,320 @@
+package com.yue;
+
+/**
+ * RouterMetrics
+ *
+ * Counters of one router, updated from the event loops without locking and read through JMX or as Prometheus text
+ * exposition format. Times come from the router's scheduler, so a simulated router reports virtual time.
+ */
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RouterMetrics implements RouterMetricsMXBean {
+    enum DROP {
+        UNKNOWN_SOURCE, // packet from a router that is not a neighbor
+        RATE_LIMITED, // REQUEST beyond the neighbor's token bucket
+        COALESCED, // REQUEST already answered with the same routing table
+    }
+
+    private static final Rip.Packet.Command[] COMMANDS =
+        {Rip.Packet.Command.REQUEST, Rip.Packet.Command.RESPONSE, Rip.Packet.Command.DISCONNECT};
+    // upper bounds of the updateRouteTable latency buckets, the last bucket is unbounded
+    private static final long[] LATENCY_BOUNDS = {10_000, 50_000, 100_000, 500_000, 1_000_000, 5_000_000, 10_000_000,
+        50_000_000, 100_000_000};
+
+    private final Router router;
+    private final long quietNanos; // a change after this long without any starts a new convergence
+    final LongAdder[] received = newAdders(COMMANDS.length); // index: command number
+    final LongAdder[] sent = newAdders(COMMANDS.length);
+    final LongAdder bytesReceived = new LongAdder();
+    final LongAdder bytesSent = new LongAdder();
+    final LongAdder decodeFailures = new LongAdder();
+    final LongAdder[] drops = newAdders(DROP.values().length); // index: DROP
+    final LongAdder[] routeChanges = newAdders(RouteChanges.KIND.values().length); // index: RouteChanges.KIND
+    final LongAdder[] latencyBuckets = newAdders(LATENCY_BOUNDS.length + 1);
+    final LongAdder latencySum = new LongAdder(); // nanoseconds
+    final Map<Integer, AtomicLong> lastUpdates = new ConcurrentHashMap<>(); // key: neighbor routerId
+    private long convergenceStart;
+    private long lastChange;
+
+    RouterMetrics(Router router, int[] neighbors, long quietNanos) {
+        this.router = router;
+        this.quietNanos = quietNanos;
+        for (int neighborId : neighbors) {
+            lastUpdates.put(neighborId, new AtomicLong(Long.MIN_VALUE));
+        }
+    }
+
+    /**
+     * the router starts converging now
+     */
+    synchronized void start() {
+        convergenceStart = lastChange = router.nanoTime();
+    }
+
+    private static LongAdder[] newAdders(int n) {
+        LongAdder[] adders = new LongAdder[n];
+        for (int i = 0; i < n; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    void onReceived(Rip.Packet.Command command, int bytes) {
+        if (command != Rip.Packet.Command.UNRECOGNIZED)
+            received[command.getNumber()].increment();
+        bytesReceived.add(bytes);
+    }
+
+    void onDropped(DROP reason) {
+        drops[reason.ordinal()].increment();
+    }
+
+    void onSent(Rip.Packet.Command command, int bytes) {
+        sent[command.getNumber()].increment();
+        bytesSent.add(bytes);
+    }
+
+    /**
+     * a RESPONSE from neighborId was applied in latencyNanos
+     */
+    void onUpdate(int neighborId, long latencyNanos) {
+        int bucket = 0;
+        while (bucket < LATENCY_BOUNDS.length && latencyNanos > LATENCY_BOUNDS[bucket])
+            bucket++;
+        latencyBuckets[bucket].increment();
+        latencySum.add(latencyNanos);
+        AtomicLong lastUpdate = lastUpdates.get(neighborId);
+        if (lastUpdate != null)
+            lastUpdate.set(router.nanoTime());
+    }
+
+    void onChanged(RouteChanges changes) {
+        for (RouteChanges.KIND kind : RouteChanges.KIND.values())
+            routeChanges[kind.ordinal()].add(changes.count(kind));
+        long now = router.nanoTime();
+        synchronized (this) {
+            if (now - lastChange >= quietNanos)
+                convergenceStart = now;
+            lastChange = now;
+        }
+    }
+
+    @Override
+    public long getRequestsReceived() {
+        return received[Rip.Packet.Command.REQUEST_VALUE].sum();
+    }
+
+    @Override
+    public long getResponsesReceived() {
+        return received[Rip.Packet.Command.RESPONSE_VALUE].sum();
+    }
+
+    @Override
+    public long getDisconnectsReceived() {
+        return received[Rip.Packet.Command.DISCONNECT_VALUE].sum();
+    }
+
+    @Override
+    public long getRequestsSent() {
+        return sent[Rip.Packet.Command.REQUEST_VALUE].sum();
+    }
+
+    @Override
+    public long getResponsesSent() {
+        return sent[Rip.Packet.Command.RESPONSE_VALUE].sum();
+    }
+
+    @Override
+    public long getDisconnectsSent() {
+        return sent[Rip.Packet.Command.DISCONNECT_VALUE].sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public long getDecodeFailures() {
+        return decodeFailures.sum();
+    }
+
+    @Override
+    public long getPacketsFromUnknownSources() {
+        return drops[DROP.UNKNOWN_SOURCE.ordinal()].sum();
+    }
+
+    @Override
+    public long getRequestsRateLimited() {
+        return drops[DROP.RATE_LIMITED.ordinal()].sum();
+    }
+
+    @Override
+    public long getRequestsCoalesced() {
+        return drops[DROP.COALESCED.ordinal()].sum();
+    }
+
+    @Override
+    public long getRoutesAdded() {
+        return routeChanges[RouteChanges.KIND.ADDED.ordinal()].sum();
+    }
+
+    @Override
+    public long getRoutesModified() {
+        return routeChanges[RouteChanges.KIND.MODIFIED.ordinal()].sum();
+    }
+
+    @Override
+    public long getRoutesWithdrawn() {
+        return routeChanges[RouteChanges.KIND.WITHDRAWN.ordinal()].sum();
+    }
+
+    @Override
+    public int getTableSize() {
+        return router.routingTable.size();
+    }
+
+    @Override
+    public long getUpdates() {
+        long count = 0;
+        for (LongAdder bucket : latencyBuckets)
+            count += bucket.sum();
+        return count;
+    }
+
+    @Override
+    public double getUpdateMeanMicros() {
+        long count = getUpdates();
+        return count == 0 ? 0 : latencySum.sum() / 1e3 / count;
+    }
+
+    @Override
+    public int getUpdateQueueDepth() {
+        int depth = router.engine == null ? 0 : router.engine.depth();
+        if (router.sessions != null) {
+            for (NeighborSession session : router.sessions.values())
+                depth += session.depth();
+        }
+        return depth;
+    }
+
+    @Override
+    public long getUpdatesDropped() {
+        long dropped = router.engine == null ? 0 : router.engine.dropped.sum();
+        if (router.sessions != null) {
+            for (NeighborSession session : router.sessions.values())
+                dropped += session.dropped.sum();
+        }
+        return dropped;
+    }
+
+    @Override
+    public synchronized double getConvergenceSeconds() {
+        return (lastChange - convergenceStart) / 1e9;
+    }
+
+    @Override
+    public Map<Integer, Double> getSecondsSinceUpdate() {
+        long now = router.nanoTime();
+        Map<Integer, Double> seconds = new TreeMap<>();
+        lastUpdates.forEach((neighborId, lastUpdate) -> {
+            long time = lastUpdate.get();
+            if (time != Long.MIN_VALUE)
+                seconds.put(neighborId, (now - time) / 1e9);
+        });
+        return seconds;
+    }
+
+    @Override
+    public Map<Integer, Boolean> getNeighborsUp() {
+        Map<Integer, Boolean> up = new TreeMap<>();
+        router.neighbors.forEach((neighborId, neighbor) -> up.put(neighborId, !neighbor.down));
+        return up;
+    }
+
+    @Override
+    public void printRoutingTable() {
+        router.printRoutingTable();
+    }
+
+    /**
+     * Prometheus text exposition format, version 0.0.4
+     */
+    String toPrometheus(int routerId) {
+        StringBuilder sb = new StringBuilder();
+        String router = "router=\"" + routerId + "\"";
+        header(sb, "rip_packets_received_total", "counter", "Datagrams received by command.");
+        for (Rip.Packet.Command command : COMMANDS)
+            sample(sb, "rip_packets_received_total", router + ",command=\"" + command + "\"",
+                received[command.getNumber()].sum());
+        header(sb, "rip_packets_sent_total", "counter", "Datagrams sent by command.");
+        for (Rip.Packet.Command command : COMMANDS)
+            sample(sb, "rip_packets_sent_total", router + ",command=\"" + command + "\"",
+                sent[command.getNumber()].sum());
+        header(sb, "rip_bytes_received_total", "counter", "Datagram payload bytes received.");
+        sample(sb, "rip_bytes_received_total", router, getBytesReceived());
+        header(sb, "rip_bytes_sent_total", "counter", "Datagram payload bytes sent.");
+        sample(sb, "rip_bytes_sent_total", router, getBytesSent());
+        header(sb, "rip_decode_failures_total", "counter", "Datagrams dropped as malformed.");
+        sample(sb, "rip_decode_failures_total", router, getDecodeFailures());
+        header(sb, "rip_packets_dropped_total", "counter",
+            "Datagrams from unknown sources, and REQUESTs rate limited or coalesced, left unanswered.");
+        for (DROP reason : DROP.values())
+            sample(sb, "rip_packets_dropped_total", router + ",reason=\"" + reason.name().toLowerCase() + "\"",
+                drops[reason.ordinal()].sum());
+        header(sb, "rip_route_changes_total", "counter", "Routes added, modified and withdrawn.");
+        for (RouteChanges.KIND kind : RouteChanges.KIND.values())
+            sample(sb, "rip_route_changes_total", router + ",change=\"" + kind.name().toLowerCase() + "\"",
+                routeChanges[kind.ordinal()].sum());
+        header(sb, "rip_routes", "gauge", "Routes in the routing table, infinite ones included.");
+        sample(sb, "rip_routes", router, getTableSize());
+        header(sb, "rip_update_seconds", "histogram", "Time to apply a RESPONSE to the routing table.");
+        long count = 0;
+        for (int i = 0; i < latencyBuckets.length; i++) {
+            count += latencyBuckets[i].sum();
+            String le = i < LATENCY_BOUNDS.length ? Double.toString(LATENCY_BOUNDS[i] / 1e9) : "+Inf";
+            sample(sb, "rip_update_seconds_bucket", router + ",le=\"" + le + "\"", count);
+        }
+        sample(sb, "rip_update_seconds_sum", router, latencySum.sum() / 1e9);
+        sample(sb, "rip_update_seconds_count", router, count);
+        if (this.router.engine != null || this.router.sessions != null) {
+            header(sb, "rip_update_queue_depth", "gauge",
+                "Packets waiting for the routing engine or the neighbor sessions.");
+            sample(sb, "rip_update_queue_depth", router, getUpdateQueueDepth());
+            header(sb, "rip_update_queue_dropped_total", "counter",
+                "Packets dropped by a full routing engine queue or neighbor session inbox.");
+            sample(sb, "rip_update_queue_dropped_total", router, getUpdatesDropped());
+        }
+        if (this.router.engine != null) {
+            header(sb, "rip_update_batches_total", "counter", "Batches of RESPONSEs applied by the routing engine.");
+            sample(sb, "rip_update_batches_total", router, this.router.engine.batches.sum());
+        }
+        header(sb, "rip_neighbor_last_update_seconds", "gauge", "Seconds since the last RESPONSE of a neighbor.");
+        getSecondsSinceUpdate().forEach((neighborId, seconds) -> sample(sb, "rip_neighbor_last_update_seconds",
+            router + ",neighbor=\"" + neighborId + "\"", seconds));
+        header(sb, "rip_neighbor_up", "gauge", "1 while a neighbor is heard from, 0 once it is considered down.");
+        getNeighborsUp().forEach((neighborId, up) -> sample(sb, "rip_neighbor_up",
+            router + ",neighbor=\"" + neighborId + "\"", up ? 1 : 0));
+        header(sb, "rip_convergence_seconds", "gauge",
+            "Seconds from the first routing table change after a quiet period to the last change since.");
+        sample(sb, "rip_convergence_seconds", router, getConvergenceSeconds());
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, Object value) {
+        sb.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+}
@@ -0,0 +1,86 @@
+package com.yue;
+
+/**
+ * RouterMetricsMXBean
+ *
+ * Router metrics as seen through JMX, registered as com.yue:type=Router,id=[router id].
+ */
+import java.util.Map;
+
+public interface RouterMetricsMXBean {
+    long getRequestsReceived();
+
+    long getResponsesReceived();
+
+    long getDisconnectsReceived();
+
+    long getRequestsSent();
+
+    long getResponsesSent();
+
+    long getDisconnectsSent();
+
+    long getBytesReceived();
+
+    long getBytesSent();
+
+    long getDecodeFailures();
+
+    /**
+     * @return datagrams dropped because their router id is not a neighbor
+     */
+    long getPacketsFromUnknownSources();
+
+    /**
+     * @return REQUESTs left unanswered because the neighbor ran out of tokens
+     */
+    long getRequestsRateLimited();
+
+    /**
+     * @return REQUESTs left unanswered because the same routing table was just sent to the neighbor
+     */
+    long getRequestsCoalesced();
+
+    long getRoutesAdded();
+
+    long getRoutesModified();
+
+    long getRoutesWithdrawn();
+
+    int getTableSize();
+
+    long getUpdates();
+
+    double getUpdateMeanMicros();
+
+    /**
+     * @return RESPONSEs waiting for the routing engine, and packets waiting for neighbor sessions, 0 without either
+     */
+    int getUpdateQueueDepth();
+
+    /**
+     * @return RESPONSEs dropped because the routing engine's queue was full, and packets dropped because a neighbor
+     * session's inbox was
+     */
+    long getUpdatesDropped();
+
+    /**
+     * @return seconds from the first routing table change after a quiet period to the last change since
+     */
+    double getConvergenceSeconds();
+
+    /**
+     * @return key: neighbor routerId, value: seconds since its last RESPONSE, neighbors never heard are left out
+     */
+    Map<Integer, Double> getSecondsSinceUpdate();
+
+    /**
+     * @return key: neighbor routerId, value: false once it missed config.dead_count keepalive intervals
+     */
+    Map<Integer, Boolean> getNeighborsUp();
+
+    /**
+     * print the whole routing table to the log
+     */
+    void printRoutingTable();
+}
@@ -0,0 +1,124 @@
+package com.yue;
+
+/**
+ * RoutingEngine
+ *
+ * Single writer alternative to applying RESPONSEs on the event loops. Event loops decode the routes of a RESPONSE
+ * into an Update and offer it to a bounded lock-free MPSC queue, a dedicated routing thread drains the queue in
+ * batches and bumps the table version and schedules one triggered update per batch. An Update offered to a full queue
+ * is dropped and counted, the neighbor's next regular update carries the same routes again.
+ *
+ * Route expiry, liveness and DISCONNECTs still change the table from the scheduler and the event loops, so the
+ * routing thread keeps taking the stripe locks, uncontended unless one of those is running.
+ */
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import io.netty.util.internal.PlatformDependent;
+
+public class RoutingEngine implements Runnable {
+    static final int MAX_BATCH = 256; // updates applied before announcing the changes
+
+    /**
+     * routes of one RESPONSE, in the order they were received
+     */
+    static class Update {
+        final int from;
+        int size;
+        int[] dests;
+        int[] metrics;
+
+        Update(int from, int capacity) {
+            this.from = from;
+            dests = new int[Math.max(capacity, 4)];
+            metrics = new int[dests.length];
+        }
+
+        void add(int dest, int metric) {
+            if (size == dests.length) {
+                dests = Arrays.copyOf(dests, size * 2);
+                metrics = Arrays.copyOf(metrics, size * 2);
+            }
+            dests[size] = dest;
+            metrics[size] = metric;
+            size++;
+        }
+    }
+
+    private final Router router;
+    private final Queue<Update> queue;
+    private final RouteChanges changes = new RouteChanges(); // routing thread only
+    final LongAdder dropped = new LongAdder();
+    final LongAdder batches = new LongAdder();
+    private volatile boolean running;
+    private volatile boolean sleeping; // set before the routing thread parks on an empty queue
+    private Thread thread;
+
+    RoutingEngine(Router router, int capacity) {
+        this.router = router;
+        queue = PlatformDependent.newFixedMpscQueue(capacity);
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this, "routing-engine");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * stop after the current batch, updates still queued are dropped
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * called by any thread
+     *
+     * @return false if the queue is full and update was dropped
+     */
+    boolean offer(Update update) {
+        if (!queue.offer(update)) {
+            dropped.increment();
+            return false;
+        }
+        // pairs with the routing thread setting sleeping before it checks the queue, so no wakeup is lost
+        if (sleeping)
+            LockSupport.unpark(thread);
+        return true;
+    }
+
+    int depth() {
+        return queue.size();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            Update update = queue.poll();
+            if (update == null) {
+                sleeping = true;
+                if (running && queue.isEmpty())
+                    LockSupport.park(this);
+                sleeping = false;
+                continue;
+            }
+            int count = 0;
+            try {
+                do {
+                    router.applyUpdate(update, changes);
+                } while (++count < MAX_BATCH && (update = queue.poll()) != null);
+                router.onRouteTableUpdated(changes);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                changes.clear();
+            }
+            batches.increment();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.yue;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * RoutingSnapshot
+ *
+ * Immutable, versioned copy of the routing table sorted by destination. The router takes a new snapshot when one is
+ * read after the table changed, readers share it without locking.
+ */
+public final class RoutingSnapshot {
+    public static final RoutingSnapshot EMPTY = new RoutingSnapshot(0, new int[0], new int[0], new int[0]);
+
+    private final long version;
+    private final int[] dests;
+    private final int[] nextHops;
+    private final int[] metrics;
+
+    private RoutingSnapshot(long version, int[] dests, int[] nextHops, int[] metrics) {
+        this.version = version;
+        this.dests = dests;
+        this.nextHops = nextHops;
+        this.metrics = metrics;
+    }
+
+    public static RoutingSnapshot of(long version, StripedRoutingTable table) {
+        return of(version, table.size(), table::forEach);
+    }
+
+    /**
+     * @param expectedSize routes expected from routes, more are taken too
+     * @param routes hands every route to the visitor once, in any order
+     */
+    public static RoutingSnapshot of(long version, int expectedSize, Consumer<RoutingTable.RouteVisitor> routes) {
+        int capacity = expectedSize;
+        int[][] columns = {new int[capacity], new int[capacity], new int[capacity]};
+        int[] count = new int[1];
+        routes.accept((dest, nextHop, metric) -> {
+            int i = count[0]++;
+            if (i == columns[0].length) { // more routes than expected
+                for (int c = 0; c < columns.length; c++)
+                    columns[c] = Arrays.copyOf(columns[c], Math.max(i * 2, 16));
+            }
+            columns[0][i] = dest;
+            columns[1][i] = nextHop;
+            columns[2][i] = metric;
+        });
+        int size = count[0];
+        // sort by dest, carrying the original index in the low 32 bits
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++)
+            order[i] = ((long)columns[0][i] << 32) | i;
+        Arrays.sort(order);
+        int[] dests = new int[size], nextHops = new int[size], metrics = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = (int)order[i];
+            dests[i] = columns[0][j];
+            nextHops[i] = columns[1][j];
+            metrics[i] = columns[2][j];
+        }
+        return new RoutingSnapshot(version, dests, nextHops, metrics);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return dests.length;
+    }
+
+    public int getDest(int index) {
+        return dests[index];
+    }
+
+    public int getNextHop(int index) {
+        return nextHops[index];
+    }
+
+    public int getMetric(int index) {
+        return metrics[index];
+    }
+
+    /**
+     * @return index of dest, or a negative value if dest is not in the snapshot
+     */
+    public int indexOf(int dest) {
+        return Arrays.binarySearch(dests, dest);
+    }
+
+    public void forEach(RoutingTable.RouteVisitor visitor) {
+        for (int i = 0; i < dests.length; i++)
+            visitor.visit(dests[i], nextHops[i], metrics[i]);
+    }
+}
@@ -0,0 +1,266 @@
+package com.yue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * RoutingTable
+ *
+ * Open addressing map from destination to (next hop, metric, refresh time), stored in parallel int arrays so that a
+ * route costs 17 bytes per slot instead of a boxed key, a map node and an entry object. An indexed table also keeps
+ * the destinations of every next hop, so that the routes through a neighbor are found without a scan.
+ */
+public class RoutingTable {
+    public interface RouteVisitor {
+        void visit(int dest, int nextHop, int metric);
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final byte USED = 1;
+    private static final byte CHANGED = 2;
+
+    private int[] dests;
+    private int[] nextHops;
+    private int[] metrics;
+    private int[] refreshed; // tick of the last refresh, used by route expiry
+    private byte[] flags;
+    private final Map<Integer, DestSet> via; // key: next hop, null unless indexed
+    private int mask;
+    private int size;
+    private int threshold;
+
+    public RoutingTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RoutingTable(int expectedSize) {
+        this(expectedSize, false);
+    }
+
+    public RoutingTable(boolean indexed) {
+        this(DEFAULT_CAPACITY, indexed);
+    }
+
+    /**
+     * @param indexed keep the destinations of every next hop, destinations have to be positive
+     */
+    public RoutingTable(int expectedSize, boolean indexed) {
+        via = indexed ? new HashMap<>() : null;
+        int capacity = DEFAULT_CAPACITY;
+        while (capacity * LOAD_FACTOR < expectedSize)
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        dests = new int[capacity];
+        nextHops = new int[capacity];
+        metrics = new int[capacity];
+        refreshed = new int[capacity];
+        flags = new byte[capacity];
+        mask = capacity - 1;
+        threshold = (int)(capacity * LOAD_FACTOR);
+    }
+
+    private int slot(int dest) {
+        int h = dest * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * @return slot of dest, or -1 if dest is not in the table
+     */
+    public int indexOf(int dest) {
+        for (int i = slot(dest);; i = (i + 1) & mask) {
+            if (flags[i] == 0)
+                return -1;
+            if (dests[i] == dest)
+                return i;
+        }
+    }
+
+    public boolean contains(int dest) {
+        return indexOf(dest) >= 0;
+    }
+
+    /**
+     * insert or overwrite a route, metric is capped at infinite
+     *
+     * @return slot of the route, valid until the next put
+     */
+    public int put(int dest, int nextHop, int metric) {
+        if (size >= threshold)
+            rehash(flags.length << 1);
+        int i = slot(dest);
+        while (flags[i] != 0 && dests[i] != dest)
+            i = (i + 1) & mask;
+        if (flags[i] == 0) {
+            flags[i] = USED;
+            dests[i] = dest;
+            size++;
+            index(dest, nextHop);
+        } else if (nextHops[i] != nextHop) {
+            unindex(dest, nextHops[i]);
+            index(dest, nextHop);
+        }
+        nextHops[i] = nextHop;
+        metrics[i] = Math.min(metric, Constants.INFINITE);
+        return i;
+    }
+
+    /**
+     * delete a route, later entries of its probe sequence are shifted back so that lookups need no tombstones
+     *
+     * @return true if dest was in the table
+     */
+    public boolean remove(int dest) {
+        int hole = indexOf(dest);
+        if (hole < 0)
+            return false;
+        unindex(dest, nextHops[hole]);
+        for (int i = (hole + 1) & mask; flags[i] != 0; i = (i + 1) & mask) {
+            // an entry may fill the hole if the hole lies between its home slot and its current slot
+            if (((i - slot(dests[i])) & mask) >= ((i - hole) & mask)) {
+                dests[hole] = dests[i];
+                nextHops[hole] = nextHops[i];
+                metrics[hole] = metrics[i];
+                refreshed[hole] = refreshed[i];
+                flags[hole] = flags[i];
+                hole = i;
+            }
+        }
+        flags[hole] = 0;
+        size--;
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldDests = dests, oldNextHops = nextHops, oldMetrics = metrics, oldRefreshed = refreshed;
+        byte[] oldFlags = flags;
+        allocate(capacity);
+        for (int j = 0; j < oldFlags.length; j++) {
+            if (oldFlags[j] == 0)
+                continue;
+            int i = slot(oldDests[j]);
+            while (flags[i] != 0)
+                i = (i + 1) & mask;
+            dests[i] = oldDests[j];
+            nextHops[i] = oldNextHops[j];
+            metrics[i] = oldMetrics[j];
+            refreshed[i] = oldRefreshed[j];
+            flags[i] = oldFlags[j];
+        }
+    }
+
+    public int getDest(int slot) {
+        return dests[slot];
+    }
+
+    public int getNextHop(int slot) {
+        return nextHops[slot];
+    }
+
+    public void setNextHop(int slot, int nextHop) {
+        if (nextHops[slot] != nextHop) {
+            unindex(dests[slot], nextHops[slot]);
+            index(dests[slot], nextHop);
+        }
+        nextHops[slot] = nextHop;
+    }
+
+    public int getMetric(int slot) {
+        return metrics[slot];
+    }
+
+    public void setMetric(int slot, int metric) {
+        metrics[slot] = Math.min(metric, Constants.INFINITE);
+    }
+
+    public int getRefreshed(int slot) {
+        return refreshed[slot];
+    }
+
+    public void setRefreshed(int slot, int tick) {
+        refreshed[slot] = tick;
+    }
+
+    public void setChanged(int slot) {
+        flags[slot] |= CHANGED;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(flags, (byte)0);
+        size = 0;
+        if (via != null)
+            via.clear();
+    }
+
+    private void index(int dest, int nextHop) {
+        if (via != null)
+            via.computeIfAbsent(nextHop, k -> new DestSet()).add(dest);
+    }
+
+    private void unindex(int dest, int nextHop) {
+        if (via == null)
+            return;
+        DestSet set = via.get(nextHop);
+        if (set != null) {
+            set.remove(dest);
+            if (set.size() == 0)
+                via.remove(nextHop);
+        }
+    }
+
+    /**
+     * visit the destinations routed through nextHop, the table must not be changed meanwhile except for metrics,
+     * refresh times and changed flags
+     */
+    public void forEachVia(int nextHop, IntConsumer visitor) {
+        if (via == null)
+            throw new IllegalStateException("next hops are not indexed");
+        DestSet set = via.get(nextHop);
+        if (set != null)
+            set.forEach(visitor);
+    }
+
+    /**
+     * @return number of routes through nextHop
+     */
+    public int countVia(int nextHop) {
+        if (via == null)
+            throw new IllegalStateException("next hops are not indexed");
+        DestSet set = via.get(nextHop);
+        return set == null ? 0 : set.size();
+    }
+
+    public void forEach(RouteVisitor visitor) {
+        for (int i = 0; i < flags.length; i++) {
+            if (flags[i] != 0)
+                visitor.visit(dests[i], nextHops[i], metrics[i]);
+        }
+    }
+
+    /**
+     * visit changed routes and clear their changed flag
+     *
+     * @return number of visited routes
+     */
+    public int drainChanged(RouteVisitor visitor) {
+        int count = 0;
+        for (int i = 0; i < flags.length; i++) {
+            if ((flags[i] & CHANGED) != 0) {
+                flags[i] = USED;
+                visitor.visit(dests[i], nextHops[i], metrics[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+}
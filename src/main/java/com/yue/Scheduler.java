@@ -0,0 +1,21 @@
+package com.yue;
+
+/**
+ * Scheduler
+ *
+ * Source of time and timers for a router. Routers normally run on their event loops, the simulator swaps in a
+ * VirtualScheduler to run on virtual time.
+ */
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public interface Scheduler {
+    /**
+     * @return nanoseconds since an arbitrary origin
+     */
+    long nanoTime();
+
+    Future<?> schedule(Runnable task, long delay, TimeUnit unit);
+
+    Future<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit);
+}
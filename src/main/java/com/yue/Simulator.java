@@ -0,0 +1,254 @@
+package com.yue;
+
+/**
+ * Simulator
+ *
+ * Runs a whole generated topology of routers in one JVM over an in-memory Fabric and reports, per mode, when the
+ * routing tables stopped changing, how many datagrams it took and how many routers ended up with shortest paths.
+ * Time is virtual, so a run takes as long as the work it does and the same seed gives the same result.
+ *
+ * java -cp RIP-1.0-jar-with-dependencies.jar com.yue.Simulator [topology] [routers] [options]
+ */
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.xml.DOMConfigurator;
+
+import de.vandermeer.asciitable.AsciiTable;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+public class Simulator {
+    static class Result {
+        Router.MODE mode;
+        double converged = -1; // seconds until the last route change, -1 if still changing at the limit
+        long elapsed; // wall clock milliseconds of the run
+        long packets;
+        long bytes;
+        long dropped;
+        int correct; // routers up whose tables hold exactly the shortest paths
+        int up;
+    }
+
+    private final Topology topology;
+    private final Config config; // shared by all routers
+    private final long latencyMicros;
+    private final double loss;
+    private final long seed;
+    private final int limit; // virtual seconds
+
+    Simulator(Topology topology, Config config, long latencyMicros, double loss, long seed, int limit) {
+        this.topology = topology;
+        this.config = config;
+        this.latencyMicros = latencyMicros;
+        this.loss = loss;
+        this.seed = seed;
+        this.limit = limit;
+    }
+
+    static InetSocketAddress address(int id, int port) {
+        return new InetSocketAddress("10." + ((id >>> 16) & 0xff) + "." + ((id >>> 8) & 0xff) + "." + (id & 0xff),
+            port);
+    }
+
+    /**
+     * config for every router of the topology, timers keep the RFC proportions to regular_timer
+     */
+    static Config configFor(Topology topology, int regularTimer, int disconnect) {
+        Config config = new Config();
+        config.regular_timer = regularTimer;
+        config.time_out_timer = regularTimer * 6;
+        config.gc_timer = regularTimer * 4;
+        config.triggered_timer = Math.max(regularTimer / 6, 1);
+        config.shutdown_timer = 0;
+        config.table_stripes = 1; // a single thread runs all routers
+        config.routers = new HashMap<>();
+        for (int id = 1; id <= topology.size(); id++) {
+            Config.RouterConfig routerConfig = config.new RouterConfig();
+            routerConfig.id = id;
+            routerConfig.ip = address(id, config.protocol_port).getHostString();
+            routerConfig.neighbors = topology.neighbors(id);
+            config.routers.put(id, routerConfig);
+        }
+        if (disconnect > 0)
+            config.routers.get(disconnect).actions = Collections.singletonMap(1, Config.ACTION_TYPE.DISCONNECT);
+        return config;
+    }
+
+    Result run(Router.MODE mode) {
+        long begin = System.nanoTime();
+        int size = topology.size();
+        Router[] routers = new Router[size + 1];
+        VirtualScheduler scheduler = new VirtualScheduler();
+        Fabric fabric = new Fabric(scheduler, latencyMicros, loss, seed);
+        for (int id = 1; id <= size; id++) {
+            Router router = new Router(id, mode);
+            router.init(config);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            router.initPipeline(channel.pipeline());
+            fabric.bind(address(id, config.protocol_port), channel);
+            router.scheduler = scheduler;
+            router.random = new Random(seed * 31 + id);
+            router.udpChannel = channel;
+            router.udpChannels.add(channel);
+            routers[id] = router;
+        }
+        for (int id = 1; id <= size; id++) {
+            routers[id].start();
+        }
+        // converged once no table changed for long enough to notice a crashed neighbor without keepalives, and to
+        // send a triggered update
+        long quiet = TimeUnit.SECONDS.toNanos(config.regular_timer * (config.dead_count + 2L) + config.triggered_timer);
+        long step = TimeUnit.MILLISECONDS.toNanos(10);
+        long lastChange = 0, changes = -1;
+        Result result = new Result();
+        result.mode = mode;
+        for (long now = step; now <= TimeUnit.SECONDS.toNanos(limit); now += step) {
+            scheduler.runUntil(now);
+            long current = 0;
+            for (int id = 1; id <= size; id++) {
+                // routes added, modified or withdrawn, garbage collecting infinite routes does not count
+                RouterMetrics metrics = routers[id].metrics;
+                current += metrics.getRoutesAdded() + metrics.getRoutesModified() + metrics.getRoutesWithdrawn();
+            }
+            if (current != changes) {
+                changes = current;
+                lastChange = now;
+            } else if (now - lastChange >= quiet) {
+                result.converged = lastChange / 1e9;
+                break;
+            }
+        }
+        result.packets = fabric.packets;
+        result.bytes = fabric.bytes;
+        result.dropped = fabric.dropped;
+        check(routers, result);
+        for (int id = 1; id <= size; id++) {
+            routers[id].closeChannel();
+            routers[id].releaseBuffers();
+        }
+        result.elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        return result;
+    }
+
+    /**
+     * compare the tables of routers still up with shortest paths over routers still up
+     */
+    private void check(Router[] routers, Result result) {
+        int size = topology.size();
+        boolean[] down = new boolean[size + 1];
+        for (int id = 1; id <= size; id++) {
+            down[id] = !routers[id].udpChannel.isActive();
+        }
+        for (int id = 1; id <= size; id++) {
+            if (down[id])
+                continue;
+            result.up++;
+            int[] distances = topology.distances(id, down);
+            RoutingSnapshot routes = routers[id].getSnapshot();
+            boolean correct = true;
+            for (int dest = 1; dest <= size && correct; dest++) {
+                if (dest == id)
+                    continue;
+                int index = routes.indexOf(dest);
+                int metric = index < 0 ? Constants.INFINITE : routes.getMetric(index);
+                correct = metric == distances[dest];
+            }
+            if (correct)
+                result.correct++;
+        }
+    }
+
+    static String render(Iterable<Result> results) {
+        AsciiTable at = new AsciiTable();
+        at.getContext().setWidth(120);
+        at.addRule();
+        at.addRow("Mode", "Converged (s)", "Packets", "Bytes", "Dropped", "Correct Routers", "Run (ms)");
+        for (Result result : results) {
+            at.addRule();
+            at.addRow(result.mode, result.converged < 0 ? "no" : String.format("%.2f", result.converged),
+                result.packets, result.bytes, result.dropped, result.correct + "/" + result.up, result.elapsed);
+        }
+        at.addRule();
+        return at.render();
+    }
+
+    public static void main(String[] args) {
+        Topology.TYPE type = Topology.TYPE.LINE;
+        int size = 100, degree = 2, regularTimer = 30, disconnect = 0, crash = 0, hello = 0, limit = 3600;
+        double latency = 0, loss = 0;
+        long seed = 1;
+        Router.MODE[] modes = Router.MODE.values();
+        int positional = 0;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-mode":
+                    modes = new Router.MODE[] {Router.MODE.values()[Integer.parseInt(args[++i])]};
+                    break;
+                case "-latency": // milliseconds
+                    latency = Double.parseDouble(args[++i]);
+                    break;
+                case "-loss": // ratio of dropped datagrams
+                    loss = Double.parseDouble(args[++i]);
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-regular": // seconds
+                    regularTimer = Integer.parseInt(args[++i]);
+                    break;
+                case "-degree": // links per router added to a scale free topology
+                    degree = Integer.parseInt(args[++i]);
+                    break;
+                case "-disconnect": // router disconnecting at round 1
+                    disconnect = Integer.parseInt(args[++i]);
+                    break;
+                case "-crash": // router crashing at round 1
+                    crash = Integer.parseInt(args[++i]);
+                    break;
+                case "-hello": // milliseconds between keepalives
+                    hello = Integer.parseInt(args[++i]);
+                    break;
+                case "-limit": // seconds
+                    limit = Integer.parseInt(args[++i]);
+                    break;
+                case "-verbose":
+                    verbose = true;
+                    break;
+                default:
+                    if (positional++ == 0)
+                        type = Topology.TYPE.valueOf(args[i].toUpperCase());
+                    else
+                        size = Integer.parseInt(args[i]);
+                    break;
+            }
+        }
+        if (verbose) {
+            DOMConfigurator.configure("log4j.xml");
+            Logger.getLogger("com.yue").setLevel(org.apache.log4j.Level.DEBUG);
+        } else {
+            DebugHelper.logLevel = DebugHelper.Level.NONE;
+        }
+        Topology topology = Topology.generate(type, size, degree, seed);
+        Config config = configFor(topology, regularTimer, disconnect);
+        config.hello_interval = hello;
+        if (crash > 0)
+            config.routers.get(crash).actions = Collections.singletonMap(1, Config.ACTION_TYPE.CRASH);
+        Simulator simulator = new Simulator(topology, config, (long)(latency * 1000), loss, seed, limit);
+        List<Result> results = new ArrayList<>();
+        for (Router.MODE mode : modes) {
+            results.add(simulator.run(mode));
+        }
+        System.out.println(type + " of " + size + " routers");
+        System.out.println(render(results));
+        if (verbose)
+            LogManager.shutdown(); // flush the async appender
+    }
+}
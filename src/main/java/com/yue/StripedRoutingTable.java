@@ -0,0 +1,146 @@
+package com.yue;
+
+/**
+ * StripedRoutingTable
+ *
+ * Routing table split into independently locked stripes by destination, so that responses from different neighbors
+ * touching different destinations are applied in parallel. Writers lock the stripe returned by stripeFor, readers
+ * lock one stripe at a time. Each stripe has its own RouteWheel for route expiry, guarded by the same monitor, and
+ * indexes its routes by next hop.
+ */
+public class StripedRoutingTable {
+    public interface Expiry {
+        /**
+         * called with the stripe lock held
+         *
+         * @return ticks until dest has to be checked again, or 0 once it is removed
+         */
+        int expire(RoutingTable stripe, int dest);
+    }
+
+    public interface ViaVisitor {
+        /**
+         * called with the stripe lock held, the route's next hop must not be changed
+         */
+        void visit(RoutingTable stripe, int dest);
+    }
+
+    private static final int DEFAULT_MAX_DELAY = 300;
+
+    private final RoutingTable[] stripes;
+    private final RouteWheel[] wheels;
+    private final int shift;
+
+    public StripedRoutingTable() {
+        this(Runtime.getRuntime().availableProcessors() * 4, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * @param maxDelay longest expiry delay in ticks
+     */
+    public StripedRoutingTable(int concurrency, int maxDelay) {
+        int bits = 0;
+        while ((1 << bits) < concurrency)
+            bits++;
+        stripes = new RoutingTable[1 << bits];
+        wheels = new RouteWheel[1 << bits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new RoutingTable(true);
+            wheels[i] = new RouteWheel(maxDelay);
+        }
+        shift = 32 - bits;
+    }
+
+    private int indexFor(int dest) {
+        // high bits of a different multiplier than RoutingTable's, so a stripe's keys still spread inside it
+        return shift == 32 ? 0 : (dest * 0x85EBCA6B) >>> shift;
+    }
+
+    /**
+     * stripe holding dest, callers synchronize on it while reading or writing
+     */
+    public RoutingTable stripeFor(int dest) {
+        return stripes[indexFor(dest)];
+    }
+
+    /**
+     * expiry wheel of the stripe holding dest, callers synchronize on stripeFor(dest)
+     */
+    public RouteWheel wheelFor(int dest) {
+        return wheels[indexFor(dest)];
+    }
+
+    /**
+     * advance the wheel of every stripe by one tick, locking one stripe at a time
+     */
+    public void expire(Expiry expiry) {
+        for (int i = 0; i < stripes.length; i++) {
+            RoutingTable stripe = stripes[i];
+            synchronized (stripe) {
+                wheels[i].advance(dest -> expiry.expire(stripe, dest));
+            }
+        }
+    }
+
+    /**
+     * visit the routes through nextHop, locking one stripe at a time
+     */
+    public void forEachVia(int nextHop, ViaVisitor visitor) {
+        for (RoutingTable stripe : stripes) {
+            synchronized (stripe) {
+                stripe.forEachVia(nextHop, dest -> visitor.visit(stripe, dest));
+            }
+        }
+    }
+
+    public int countVia(int nextHop) {
+        int count = 0;
+        for (RoutingTable stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.countVia(nextHop);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * insert or overwrite a route without scheduling it on the expiry wheel
+     */
+    public void put(int dest, int nextHop, int metric) {
+        RoutingTable stripe = stripeFor(dest);
+        synchronized (stripe) {
+            stripe.put(dest, nextHop, metric);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (RoutingTable stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * each stripe is visited consistently, changes to other stripes may interleave
+     */
+    public void forEach(RoutingTable.RouteVisitor visitor) {
+        for (RoutingTable stripe : stripes) {
+            synchronized (stripe) {
+                stripe.forEach(visitor);
+            }
+        }
+    }
+
+    public int drainChanged(RoutingTable.RouteVisitor visitor) {
+        int count = 0;
+        for (RoutingTable stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.drainChanged(visitor);
+            }
+        }
+        return count;
+    }
+}
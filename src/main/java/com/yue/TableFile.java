@@ -0,0 +1,105 @@
+package com.yue;
+
+/**
+ * TableFile
+ *
+ * Routing table saved in a file for a warm restart. Layout, big endian:
+ *
+ * magic(4) format(4) routerId(4) tableVersion(8) savedAt(8) count(4) crc32(4), then count entries of
+ * dest(4) nextHop(4) metric(1)
+ *
+ * The CRC covers the entries. A save writes a temporary file next to the target, forces it to disk and moves it over
+ * the target, so a crash while saving leaves the previous file in place. Files are read and written through heap
+ * buffers rather than mapped, a mapping stays live until garbage collected and would still point at the temporary
+ * file when it is moved. Infinite routes are not saved.
+ */
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+class TableFile {
+    static final int MAGIC = 0x52495054; // "RIPT"
+    static final int FORMAT = 1;
+    static final int HEADER_SIZE = 36;
+    static final int ENTRY_SIZE = 9;
+
+    /**
+     * @return routes saved
+     */
+    static int save(Path file, int routerId, RoutingSnapshot routes) throws IOException {
+        int count = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            if (routes.getMetric(i) < Constants.INFINITE)
+                count++;
+        }
+        int size = HEADER_SIZE + count * ENTRY_SIZE;
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < routes.size(); i++) {
+            if (routes.getMetric(i) >= Constants.INFINITE)
+                continue;
+            buf.putInt(offset, routes.getDest(i)).putInt(offset + 4, routes.getNextHop(i))
+                .put(offset + 8, (byte)routes.getMetric(i));
+            offset += ENTRY_SIZE;
+        }
+        buf.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, routerId).putLong(12, routes.getVersion())
+            .putLong(20, System.currentTimeMillis()).putInt(28, count).putInt(32, checksum(buf, size));
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining())
+                channel.write(buf);
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * hand the saved routes to visitor, nothing is visited unless the whole file checks out
+     *
+     * @return System.currentTimeMillis() when the file was saved
+     * @throws IOException if the file cannot be read, belongs to another router or is corrupt
+     */
+    static long load(Path file, int routerId, RoutingTable.RouteVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                throw new IOException(file + " is truncated");
+            if (size > Integer.MAX_VALUE)
+                throw new IOException(file + " is too large");
+            ByteBuffer buf = ByteBuffer.allocate((int)size);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf) < 0)
+                    throw new IOException(file + " is truncated");
+            }
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT)
+                throw new IOException(file + " is not a routing table of format " + FORMAT);
+            if (buf.getInt(8) != routerId)
+                throw new IOException(file + " belongs to router " + buf.getInt(8));
+            int count = buf.getInt(28);
+            if (count < 0 || size != HEADER_SIZE + (long)count * ENTRY_SIZE)
+                throw new IOException(file + " is truncated");
+            if (checksum(buf, (int)size) != buf.getInt(32))
+                throw new IOException(file + " fails its checksum");
+            for (int offset = HEADER_SIZE; offset < size; offset += ENTRY_SIZE) {
+                visitor.visit(buf.getInt(offset), buf.getInt(offset + 4), buf.get(offset + 8));
+            }
+            return buf.getLong(20);
+        }
+    }
+
+    private static int checksum(ByteBuffer buf, int size) {
+        ByteBuffer entries = buf.duplicate();
+        ((Buffer)entries).limit(size).position(HEADER_SIZE); // Buffer's methods, Java 8 has no covariant overrides
+        CRC32 crc = new CRC32();
+        crc.update(entries);
+        return (int)crc.getValue();
+    }
+}
@@ -0,0 +1,117 @@
+package com.yue;
+
+/**
+ * Topology
+ *
+ * Generated router graphs for the simulator. Routers are numbered 1 ~ size, neighbors[id] lists the neighbors of
+ * router id, neighbors[0] is unused.
+ */
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class Topology {
+    public enum TYPE {
+        LINE, RING, GRID, SCALE_FREE,
+    }
+
+    private final List<Set<Integer>> links;
+
+    private Topology(int size) {
+        links = new ArrayList<>(size + 1);
+        for (int i = 0; i <= size; i++) {
+            links.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * @param degree links added per router of a scale free graph, ignored otherwise
+     */
+    public static Topology generate(TYPE type, int size, int degree, long seed) {
+        Topology topology = new Topology(size);
+        switch (type) {
+            case LINE:
+                for (int i = 1; i < size; i++)
+                    topology.link(i, i + 1);
+                break;
+            case RING:
+                for (int i = 1; i < size; i++)
+                    topology.link(i, i + 1);
+                if (size > 2)
+                    topology.link(size, 1);
+                break;
+            case GRID: // as square as possible, the last row may be partial
+                int width = (int)Math.ceil(Math.sqrt(size));
+                for (int i = 1; i <= size; i++) {
+                    if (i % width != 0 && i < size)
+                        topology.link(i, i + 1);
+                    if (i + width <= size)
+                        topology.link(i, i + width);
+                }
+                break;
+            case SCALE_FREE: // Barabasi-Albert preferential attachment
+                Random random = new Random(seed);
+                List<Integer> ends = new ArrayList<>(); // every router once per link, sampled for attachment
+                for (int i = 2; i <= size; i++) {
+                    int links = Math.min(Math.max(degree, 1), i - 1);
+                    while (topology.links.get(i).size() < links) {
+                        int target = ends.isEmpty() ? 1 + random.nextInt(i - 1) : ends.get(random.nextInt(ends.size()));
+                        if (target != i && topology.link(i, target)) {
+                            ends.add(target);
+                            ends.add(i);
+                        }
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        return topology;
+    }
+
+    private boolean link(int a, int b) {
+        return links.get(a).add(b) && links.get(b).add(a);
+    }
+
+    public int size() {
+        return links.size() - 1;
+    }
+
+    public int[] neighbors(int id) {
+        int[] neighbors = new int[links.get(id).size()];
+        int i = 0;
+        for (int neighbor : links.get(id)) {
+            neighbors[i++] = neighbor;
+        }
+        return neighbors;
+    }
+
+    /**
+     * hop counts from source, capped at infinite, ignoring routers marked down
+     */
+    public int[] distances(int source, boolean[] down) {
+        int[] distances = new int[links.size()];
+        Arrays.fill(distances, Constants.INFINITE);
+        if (down[source])
+            return distances;
+        distances[source] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int id = queue.poll();
+            if (distances[id] + 1 >= Constants.INFINITE)
+                continue;
+            for (int neighbor : links.get(id)) {
+                if (!down[neighbor] && distances[neighbor] > distances[id] + 1) {
+                    distances[neighbor] = distances[id] + 1;
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,145 @@
+package com.yue;
+
+/**
+ * VirtualScheduler
+ *
+ * Scheduler on virtual time, nothing runs until the owner calls runUntil, which executes due tasks on the calling
+ * thread in time order and jumps the clock from one task to the next. Tasks due at the same time run in the order
+ * they were scheduled, so a run only depends on its inputs. Waiting on a task's Future runs the clock until the task
+ * has run instead of blocking. Not thread safe.
+ */
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class VirtualScheduler implements Scheduler {
+    private class Task implements Future<Object>, Comparable<Task> {
+        final Runnable runnable;
+        final long period;
+        long time;
+        long sequence;
+        boolean cancelled;
+        boolean done;
+        RuntimeException failure;
+
+        Task(Runnable runnable, long time, long period) {
+            this.runnable = runnable;
+            this.time = time;
+            this.period = period;
+            sequence = nextSequence++;
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (time != o.time)
+                return Long.compare(time, o.time);
+            return Long.compare(sequence, o.sequence);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (done)
+                return false;
+            cancelled = done = true;
+            return queue.remove(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         * run the clock until this task has run, a periodic task never completes unless cancelled
+         */
+        @Override
+        public Object get() throws ExecutionException {
+            if (period > 0 && !done)
+                throw new IllegalStateException("a periodic virtual task never completes");
+            runUntil(time);
+            return result();
+        }
+
+        /**
+         * run the clock until this task has run or timeout has passed on the virtual clock
+         */
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws ExecutionException, TimeoutException {
+            runUntil(Math.min(time, now + unit.toNanos(Math.max(timeout, 0))));
+            if (!done)
+                throw new TimeoutException();
+            return result();
+        }
+
+        private Object result() throws ExecutionException {
+            if (cancelled)
+                throw new CancellationException();
+            if (failure != null)
+                throw new ExecutionException(failure);
+            return null;
+        }
+    }
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>();
+    private long now;
+    private long nextSequence;
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public Future<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return add(new Task(task, now + unit.toNanos(Math.max(delay, 0)), 0));
+    }
+
+    @Override
+    public Future<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0)
+            throw new IllegalArgumentException("period: " + period);
+        return add(new Task(task, now + unit.toNanos(Math.max(initialDelay, 0)), unit.toNanos(period)));
+    }
+
+    private Task add(Task task) {
+        queue.add(task);
+        return task;
+    }
+
+    /**
+     * run every task due until time, then move the clock to time
+     *
+     * @return number of tasks run
+     */
+    public int runUntil(long time) {
+        int count = 0;
+        while (!queue.isEmpty() && queue.peek().time <= time) {
+            Task task = queue.poll();
+            now = task.time;
+            try {
+                task.runnable.run();
+            } catch (RuntimeException e) {
+                task.failure = e;
+                e.printStackTrace();
+            }
+            count++;
+            if (task.period > 0 && !task.cancelled) {
+                task.time += task.period;
+                task.sequence = nextSequence++;
+                queue.add(task);
+            } else {
+                task.done = true;
+            }
+        }
+        now = Math.max(now, time);
+        return count;
+    }
+}
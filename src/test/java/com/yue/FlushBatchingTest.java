@@ -0,0 +1,140 @@
+package com.yue;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+
+/**
+ * FlushBatchingTest
+ *
+ * Datagrams written and flushes reaching the channel of a router with more neighbors than config.flush_batch_size:
+ * the REQUESTs of a regular tick and the replies to a burst of REQUESTs read at once are flushed in batches, not
+ * one flush per datagram. Counts flushes only, the send syscalls behind a flush depend on the transport.
+ */
+public class FlushBatchingTest {
+    private static final int ID = 1;
+    private static final int NEIGHBORS = 100;
+    private static final int BATCH = 64;
+    private static final InetSocketAddress LOCAL = new InetSocketAddress("127.0.0.1", 520);
+
+    private Router router;
+    private VirtualScheduler scheduler;
+    private EmbeddedChannel channel;
+    private int writes;
+    private int flushCalls; // flushes issued by the router
+    private int flushes; // flushes reaching the socket
+
+    @Before
+    public void setUp() {
+        DebugHelper.logLevel = DebugHelper.Level.NONE;
+        Config config = new Config();
+        config.flush_batch_size = BATCH;
+        config.routers = new HashMap<>();
+        int[] neighbors = new int[NEIGHBORS];
+        for (int i = 0; i < NEIGHBORS; i++)
+            neighbors[i] = ID + 1 + i;
+        config.routers.put(ID, routerConfig(config, ID, neighbors));
+        for (int neighbor : neighbors)
+            config.routers.put(neighbor, routerConfig(config, neighbor, new int[] {ID}));
+        channel = new EmbeddedChannel();
+        router = new Router(ID, Router.MODE.NORMAL);
+        router.init(config);
+        router.initPipeline(channel.pipeline());
+        // last in the pipeline, where the router's writes and flushes enter it
+        channel.pipeline().addLast(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                writes++;
+                super.write(ctx, msg, promise);
+            }
+
+            @Override
+            public void flush(ChannelHandlerContext ctx) throws Exception {
+                flushCalls++;
+                super.flush(ctx);
+            }
+        });
+        // first in the pipeline, where flushes leave it for the socket
+        channel.pipeline().addFirst(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(ChannelHandlerContext ctx) throws Exception {
+                flushes++;
+                super.flush(ctx);
+            }
+        });
+        scheduler = new VirtualScheduler();
+        router.scheduler = scheduler;
+        router.udpChannel = channel;
+        router.udpChannels.add(channel);
+    }
+
+    private static Config.RouterConfig routerConfig(Config config, int id, int[] neighbors) {
+        Config.RouterConfig routerConfig = config.new RouterConfig();
+        routerConfig.id = id;
+        routerConfig.ip = "127.0.0.1";
+        routerConfig.neighbors = neighbors;
+        return routerConfig;
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private void reset() {
+        channel.releaseOutbound();
+        writes = flushCalls = flushes = 0;
+    }
+
+    @Test
+    public void regularTickFlushesInBatches() {
+        router.start();
+        scheduler.runUntil(0); // the first tick runs at once
+        assertEquals(NEIGHBORS, writes);
+        // once BATCH datagrams are pending and once at the end of the tick. Outside a read FlushConsolidationHandler
+        // defers them to a task on the event loop, which EmbeddedChannel runs at its next write, so the flushes
+        // reaching the socket are not checked here
+        assertEquals((NEIGHBORS + BATCH - 1) / BATCH, flushCalls);
+
+        long period = TimeUnit.SECONDS.toNanos(router.config.regular_timer);
+        scheduler.runUntil(period - 1);
+        reset();
+        scheduler.runUntil(period);
+        assertEquals(NEIGHBORS, writes);
+        assertEquals((NEIGHBORS + BATCH - 1) / BATCH, flushCalls);
+    }
+
+    @Test
+    public void repliesToARequestBurstFlushInBatches() {
+        router.start();
+        scheduler.runUntil(0);
+        channel.runPendingTasks();
+        reset();
+        Object[] requests = new Object[NEIGHBORS];
+        for (int i = 0; i < NEIGHBORS; i++) {
+            Rip.Packet request = Rip.Packet.newBuilder().setCommand(Rip.Packet.Command.REQUEST)
+                .setRouterId(ID + 1 + i).setVersion(Constants.VERSION).build();
+            requests[i] = new DatagramPacket(Unpooled.wrappedBuffer(request.toByteArray()), LOCAL,
+                new InetSocketAddress("127.0.0.1", 520));
+        }
+        channel.writeInbound(requests); // one read loop
+        channel.checkException();
+        assertEquals(NEIGHBORS, writes); // one RESPONSE each
+        assertEquals(NEIGHBORS, flushCalls); // each reply is flushed
+        // FlushConsolidationHandler passes on every BATCH-th flush of the read loop and one at read complete
+        assertEquals(NEIGHBORS / BATCH + 1, flushes);
+    }
+}
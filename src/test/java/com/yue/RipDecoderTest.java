@@ -0,0 +1,181 @@
+package com.yue;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.socket.DatagramPacket;
+
+/**
+ * RipDecoderTest
+ *
+ * Malformed datagrams from a neighbor through the streaming decoder: truncated packets, negative length prefixes and
+ * lengths running past their message are dropped as decode failures instead of hanging the event loop or reading
+ * routes out of the wrong bytes.
+ */
+public class RipDecoderTest {
+    private static final int ID = 1;
+    private static final int NEIGHBOR = 2;
+    private static final int FIRST_DEST = 1 << 16;
+    private static final InetSocketAddress LOCAL = new InetSocketAddress("127.0.0.1", 520);
+    private static final InetSocketAddress REMOTE = new InetSocketAddress("127.0.0.2", 520);
+    // tags of the top level fields, field number << 3 | wire type
+    private static final int COMMAND = Rip.Packet.COMMAND_FIELD_NUMBER << 3;
+    private static final int ROUTER_ID = Rip.Packet.ROUTERID_FIELD_NUMBER << 3;
+    private static final int ROUTER_ENTRIES = Rip.Packet.ROUTERENTRIES_FIELD_NUMBER << 3 | 2;
+    private static final int DESTS = Rip.Packet.DESTS_FIELD_NUMBER << 3 | 2;
+    private static final int UNKNOWN = 8 << 3 | 2;
+
+    private Router router;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        DebugHelper.logLevel = DebugHelper.Level.NONE;
+        Config config = new Config();
+        config.routers = new HashMap<>();
+        for (int id = ID; id <= NEIGHBOR; id++) {
+            Config.RouterConfig routerConfig = config.new RouterConfig();
+            routerConfig.id = id;
+            routerConfig.ip = "127.0.0.1";
+            routerConfig.neighbors = new int[] {ID + NEIGHBOR - id};
+            config.routers.put(id, routerConfig);
+        }
+        channel = new EmbeddedChannel();
+        router = new Router(ID, Router.MODE.NORMAL);
+        router.init(config);
+        router.udpChannel = channel;
+        router.initPipeline(channel.pipeline());
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    private static ByteBuf varint(ByteBuf buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        return buf.writeByte((int)value);
+    }
+
+    /**
+     * command and routerId of a RESPONSE from the neighbor
+     */
+    private static ByteBuf responseHeader() {
+        ByteBuf buf = Unpooled.buffer();
+        varint(varint(buf, COMMAND), Rip.Packet.Command.RESPONSE_VALUE);
+        return varint(varint(buf, ROUTER_ID), NEIGHBOR);
+    }
+
+    private static ByteBuf routerEntry(ByteBuf buf, int dest, int metric) {
+        ByteBuf entry = Unpooled.buffer();
+        varint(varint(entry, Rip.Packet.RouterEntry.DEST_FIELD_NUMBER << 3), dest);
+        varint(varint(entry, Rip.Packet.RouterEntry.NEXTHOP_FIELD_NUMBER << 3), NEIGHBOR);
+        varint(varint(entry, Rip.Packet.RouterEntry.METRIC_FIELD_NUMBER << 3), metric);
+        varint(varint(buf, ROUTER_ENTRIES), entry.readableBytes()).writeBytes(entry);
+        entry.release();
+        return buf;
+    }
+
+    /**
+     * @return decode failures counted while receiving buf
+     */
+    private long receive(ByteBuf buf) {
+        long failures = router.metrics.decodeFailures.sum();
+        channel.writeInbound(new DatagramPacket(buf, LOCAL, REMOTE));
+        channel.checkException();
+        return router.metrics.decodeFailures.sum() - failures;
+    }
+
+    /**
+     * @return dest -> metric of every route in the table
+     */
+    private Map<Integer, Integer> routes() {
+        Map<Integer, Integer> routes = new TreeMap<>();
+        router.getSnapshot().forEach((dest, nextHop, metric) -> routes.put(dest, metric));
+        return routes;
+    }
+
+    private static Map<Integer, Integer> routes(int... destMetrics) {
+        Map<Integer, Integer> routes = new TreeMap<>();
+        for (int i = 0; i < destMetrics.length; i += 2)
+            routes.put(destMetrics[i], destMetrics[i + 1]);
+        return routes;
+    }
+
+    @Test(timeout = 5000)
+    public void wellFormedResponseIsApplied() {
+        assertEquals(routes(NEIGHBOR, 1), routes()); // the directly connected neighbor
+        assertEquals(0, receive(routerEntry(responseHeader(), FIRST_DEST, 1)));
+        assertEquals(routes(NEIGHBOR, 1, FIRST_DEST, 2), routes());
+    }
+
+    @Test(timeout = 5000)
+    public void negativeLengthIsRejected() {
+        // an unknown length delimited field of length -11, the length prefix alone takes 10 bytes
+        ByteBuf buf = varint(varint(Unpooled.buffer(), UNKNOWN), -11L);
+        assertEquals(11, buf.readableBytes());
+        assertEquals(1, receive(buf));
+
+        buf = varint(varint(responseHeader(), DESTS), -3L);
+        assertEquals(1, receive(buf));
+
+        buf = varint(varint(responseHeader(), ROUTER_ENTRIES), -1L);
+        assertEquals(1, receive(buf));
+    }
+
+    @Test(timeout = 5000)
+    public void truncatedResponseIsRejected() {
+        // lengths at which every field of the packet is complete. routerId goes first, cut before the command the
+        // packet is a REQUEST from the neighbor, not a RESPONSE from router 0
+        List<Integer> boundaries = new ArrayList<>();
+        ByteBuf full = varint(varint(Unpooled.buffer(), ROUTER_ID), NEIGHBOR);
+        boundaries.add(full.writerIndex());
+        varint(varint(full, COMMAND), Rip.Packet.Command.RESPONSE_VALUE);
+        boundaries.add(full.writerIndex());
+        routerEntry(full, FIRST_DEST, 1);
+        boundaries.add(full.writerIndex());
+        routerEntry(full, FIRST_DEST + 1, 1);
+        for (int length = 1; length < full.readableBytes(); length++) {
+            ByteBuf truncated = full.retainedSlice(0, length);
+            assertEquals("truncated to " + length, boundaries.contains(length) ? 0 : 1, receive(truncated));
+        }
+        full.release();
+        assertEquals(routes(NEIGHBOR, 1, FIRST_DEST, 2), routes()); // the second route never arrived whole
+        assertEquals(1, receive(varint(varint(responseHeader(), DESTS), 4).writeByte(2)));
+        assertEquals(1, receive(Unpooled.buffer().writeByte(COMMAND).writeByte(0x80)));
+    }
+
+    @Test(timeout = 5000)
+    public void overlongLengthIsRejected() {
+        // length delimited fields running past the end of the packet
+        assertEquals(1, receive(varint(varint(responseHeader(), UNKNOWN), 100).writeByte(0)));
+        assertEquals(1, receive(varint(varint(responseHeader(), DESTS), Integer.MAX_VALUE).writeByte(2)));
+        assertEquals(1, receive(varint(varint(responseHeader(), ROUTER_ENTRIES), 100).writeByte(8)));
+        assertEquals(1, receive(varint(varint(responseHeader(), ROUTER_ENTRIES), Integer.MAX_VALUE).writeByte(8)));
+        assertEquals(routes(NEIGHBOR, 1), routes());
+
+        // a field inside a router entry running past the entry, the routes before it are kept
+        ByteBuf buf = routerEntry(responseHeader(), FIRST_DEST, 1);
+        varint(varint(buf, ROUTER_ENTRIES), 4);
+        varint(varint(buf, UNKNOWN), 10);
+        buf.writeBytes(new byte[12]);
+        assertEquals(1, receive(buf));
+        assertEquals(routes(NEIGHBOR, 1, FIRST_DEST, 2), routes());
+    }
+}
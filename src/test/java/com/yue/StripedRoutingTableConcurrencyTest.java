@@ -0,0 +1,218 @@
+package com.yue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * StripedRoutingTableConcurrencyTest
+ *
+ * Writer threads apply seeded updates under the stripe locks, the way Router does, while a reader keeps taking
+ * snapshots and walking the next hop index. Every writer owns a range of destinations it inserts, reroutes and
+ * removes, and all of them offer routes to a shared range where the better route wins, so the final table does not
+ * depend on the interleaving and is checked against the same updates replayed on one thread.
+ */
+public class StripedRoutingTableConcurrencyTest {
+    private static final int WRITERS = 8;
+    private static final int UPDATES = 100000; // per writer
+    private static final int OWN = 2000; // destinations owned by each writer
+    private static final int SHARED = 500; // destinations every writer updates
+    private static final int SHARED_BASE = WRITERS * OWN + 1;
+    private static final int NEXT_HOPS = 6;
+
+    /**
+     * table the updates go to, the striped table or the sequential reference
+     */
+    private interface Target {
+        void put(int dest, int nextHop, int metric);
+
+        void remove(int dest);
+
+        /**
+         * keep the better of the current route and the offered one, ties go to the lower next hop
+         */
+        void offer(int dest, int nextHop, int metric);
+    }
+
+    private static boolean better(int nextHop, int metric, int currentNextHop, int currentMetric) {
+        return metric < currentMetric || metric == currentMetric && nextHop < currentNextHop;
+    }
+
+    private static void update(int writer, Random random, Target target) {
+        int nextHop = 1 + random.nextInt(NEXT_HOPS);
+        int metric = 1 + random.nextInt(Constants.INFINITE);
+        int op = random.nextInt(8);
+        if (op < 2) {
+            target.offer(SHARED_BASE + random.nextInt(SHARED), nextHop, metric);
+        } else {
+            int dest = writer * OWN + 1 + random.nextInt(OWN);
+            if (op == 2)
+                target.remove(dest);
+            else
+                target.put(dest, nextHop, metric);
+        }
+    }
+
+    private static Target striped(StripedRoutingTable table) {
+        return new Target() {
+            @Override
+            public void put(int dest, int nextHop, int metric) {
+                RoutingTable stripe = table.stripeFor(dest);
+                synchronized (stripe) {
+                    int slot = stripe.indexOf(dest);
+                    if (slot < 0) {
+                        stripe.put(dest, nextHop, metric);
+                    } else { // reroute in place like updateRouteTable
+                        stripe.setNextHop(slot, nextHop);
+                        stripe.setMetric(slot, metric);
+                    }
+                }
+            }
+
+            @Override
+            public void remove(int dest) {
+                RoutingTable stripe = table.stripeFor(dest);
+                synchronized (stripe) {
+                    stripe.remove(dest);
+                }
+            }
+
+            @Override
+            public void offer(int dest, int nextHop, int metric) {
+                RoutingTable stripe = table.stripeFor(dest);
+                synchronized (stripe) {
+                    int slot = stripe.indexOf(dest);
+                    if (slot < 0) {
+                        stripe.put(dest, nextHop, metric);
+                    } else if (better(nextHop, metric, stripe.getNextHop(slot), stripe.getMetric(slot))) {
+                        stripe.setNextHop(slot, nextHop);
+                        stripe.setMetric(slot, metric);
+                    }
+                }
+            }
+        };
+    }
+
+    private static Target reference(Map<Integer, int[]> routes) {
+        return new Target() {
+            @Override
+            public void put(int dest, int nextHop, int metric) {
+                routes.put(dest, new int[] {nextHop, metric});
+            }
+
+            @Override
+            public void remove(int dest) {
+                routes.remove(dest);
+            }
+
+            @Override
+            public void offer(int dest, int nextHop, int metric) {
+                int[] route = routes.get(dest);
+                if (route == null || better(nextHop, metric, route[0], route[1]))
+                    put(dest, nextHop, metric);
+            }
+        };
+    }
+
+    @Test
+    public void concurrentUpdatesMatchSequentialReference() throws Exception {
+        StripedRoutingTable table = new StripedRoutingTable(16, 8);
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<Void>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(pool.submit((Callable<Void>)() -> {
+                    Random random = new Random(writer);
+                    Target target = striped(table);
+                    start.await();
+                    for (int i = 0; i < UPDATES; i++)
+                        update(writer, random, target);
+                    return null;
+                }));
+            }
+            Future<Integer> reader = pool.submit(() -> {
+                start.await();
+                int snapshots = 0;
+                while (writing.get()) {
+                    RoutingSnapshot snapshot = RoutingSnapshot.of(snapshots, table);
+                    for (int i = 1; i < snapshot.size(); i++)
+                        assertTrue(snapshot.getDest(i - 1) < snapshot.getDest(i));
+                    int nextHop = 1 + snapshots % NEXT_HOPS;
+                    table.forEachVia(nextHop, (stripe, dest) -> {
+                        int slot = stripe.indexOf(dest);
+                        assertTrue(slot >= 0);
+                        assertEquals(nextHop, stripe.getNextHop(slot));
+                    });
+                    snapshots++;
+                }
+                return snapshots;
+            });
+            start.countDown();
+            for (Future<Void> writer : writers)
+                writer.get(60, TimeUnit.SECONDS);
+            writing.set(false);
+            assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<Integer, int[]> expected = new TreeMap<>();
+        Target sequential = reference(expected);
+        for (int writer = 0; writer < WRITERS; writer++) {
+            Random random = new Random(writer);
+            for (int i = 0; i < UPDATES; i++)
+                update(writer, random, sequential);
+        }
+
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<Integer, int[]> route : expected.entrySet()) {
+            RoutingTable stripe = table.stripeFor(route.getKey());
+            synchronized (stripe) {
+                int slot = stripe.indexOf(route.getKey());
+                assertTrue("route to " + route.getKey(), slot >= 0);
+                assertEquals(route.getValue()[0], stripe.getNextHop(slot));
+                assertEquals(route.getValue()[1], stripe.getMetric(slot));
+            }
+        }
+
+        for (int nextHop = 1; nextHop <= NEXT_HOPS; nextHop++) {
+            List<Integer> via = new ArrayList<>();
+            for (Map.Entry<Integer, int[]> route : expected.entrySet()) {
+                if (route.getValue()[0] == nextHop)
+                    via.add(route.getKey());
+            }
+            List<Integer> indexed = new ArrayList<>();
+            table.forEachVia(nextHop, (stripe, dest) -> indexed.add(dest));
+            indexed.sort(null);
+            assertEquals("routes via " + nextHop, via, indexed);
+            assertEquals(via.size(), table.countVia(nextHop));
+        }
+
+        RoutingSnapshot snapshot = RoutingSnapshot.of(1, table);
+        assertEquals(expected.size(), snapshot.size());
+        int i = 0;
+        for (Map.Entry<Integer, int[]> route : expected.entrySet()) {
+            assertEquals(route.getKey().intValue(), snapshot.getDest(i));
+            assertEquals(route.getValue()[0], snapshot.getNextHop(i));
+            assertEquals(route.getValue()[1], snapshot.getMetric(i));
+            i++;
+        }
+    }
+}